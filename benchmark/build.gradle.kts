@@ -0,0 +1,66 @@
+@file:Suppress("GradlePackageUpdate")
+
+plugins {
+    id("java")
+    id("me.champeau.jmh") version "0.6.8"
+}
+
+repositories {
+    mavenCentral()
+    maven("https://repo.spongepowered.org/maven")
+}
+
+dependencies {
+    jmhImplementation(rootProject)
+
+    // Everything Mixin needs at runtime, the root project only depends on it at compile time
+    jmhImplementation("org.spongepowered:mixin:0.8.5")
+    jmhImplementation("org.ow2.asm:asm:9.2")
+    jmhImplementation("org.ow2.asm:asm-tree:9.2")
+    jmhImplementation("org.ow2.asm:asm-analysis:9.2")
+    jmhImplementation("org.ow2.asm:asm-commons:9.2")
+    jmhImplementation("org.ow2.asm:asm-util:9.2")
+    jmhImplementation("com.google.guava:guava:31.1-jre")
+    jmhImplementation("com.google.code.gson:gson:2.10.1")
+    jmhImplementation("org.apache.logging.log4j:log4j-api:2.19.0")
+    jmhImplementation("org.apache.logging.log4j:log4j-core:2.19.0")
+
+    testImplementation("org.junit.jupiter:junit-jupiter:5.9.2")
+}
+
+// The tests use the harness and the synthetic classes from the jmh source set
+sourceSets {
+    test {
+        compileClasspath += sourceSets["jmh"].output + sourceSets["jmh"].compileClasspath
+        runtimeClasspath += sourceSets["jmh"].output + sourceSets["jmh"].runtimeClasspath
+    }
+}
+
+tasks.test {
+    useJUnitPlatform()
+
+    // Mixin is bootstrapped once per JVM, and each test class adds its own mixin configuration before that
+    forkEvery = 1
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_1_8
+    targetCompatibility = sourceCompatibility
+}
+
+jmh {
+    jmhVersion.set("1.36")
+    profilers.add("gc")
+}
+
+tasks.register<JavaExec>("transformBenchmark") {
+    group = "benchmark"
+    description = "Measures how quickly BetterInject is applied to synthetic classes"
+
+    classpath = sourceSets["jmh"].runtimeClasspath
+    mainClass.set("dev.cbyrne.betterinject.benchmark.transform.TransformBenchmark")
+
+    listOf("betterinject.transform.classes", "betterinject.transform.warmup").forEach { name ->
+        project.findProperty(name)?.let { systemProperty(name, it) }
+    }
+}
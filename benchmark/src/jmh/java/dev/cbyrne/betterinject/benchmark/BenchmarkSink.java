@@ -0,0 +1,8 @@
+package dev.cbyrne.betterinject.benchmark;
+
+/**
+ * Somewhere for handlers to write to, so that the JIT can not remove them.
+ */
+public class BenchmarkSink {
+    public static int value;
+}
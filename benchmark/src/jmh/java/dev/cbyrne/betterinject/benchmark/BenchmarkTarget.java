@@ -0,0 +1,59 @@
+package dev.cbyrne.betterinject.benchmark;
+
+/**
+ * The methods which are hooked by the benchmark's mixins.
+ * <p/>
+ * Every class in {@link dev.cbyrne.betterinject.benchmark.target} implements these the same way, the only difference
+ * between them is which injector (if any) has been applied.
+ */
+public interface BenchmarkTarget {
+    /**
+     * Hooked at HEAD, not cancellable
+     */
+    void head(int a, int b);
+
+    /**
+     * Hooked at HEAD, not cancellable, with {@code shareCallbackInfo}
+     */
+    void headShared(int a, int b);
+
+    /**
+     * Hooked at HEAD, cancellable
+     */
+    void headCancellable(int a, int b);
+
+    /**
+     * Hooked at HEAD, cancellable, with a handler returning a boolean
+     */
+    void headCancellableBoolean(int a, int b);
+
+    /**
+     * Hooked at HEAD, cancellable, returning a primitive through a CallbackInfoReturnable
+     */
+    int headCancellableInt(int a);
+
+    /**
+     * Hooked at HEAD, cancellable, returning an object through a CallbackInfoReturnable
+     */
+    Object headCancellableObject(Object a);
+
+    /**
+     * Hooked at RETURN, reading a primitive return value
+     */
+    int returnInt(int a);
+
+    /**
+     * Hooked at RETURN, reading an object return value
+     */
+    Object returnObject(Object a);
+
+    /**
+     * Hooked at HEAD, capturing the second argument
+     */
+    int captureArg(int a, int b);
+
+    /**
+     * Hooked at RETURN, capturing a local variable
+     */
+    int captureLocal(int a);
+}
@@ -0,0 +1,85 @@
+package dev.cbyrne.betterinject.benchmark;
+
+import dev.cbyrne.betterinject.benchmark.harness.MixinHarness;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the runtime overhead of the code generated at each call site.
+ * <p/>
+ * Run with {@code ./gradlew :benchmark:jmh}, the gc profiler is enabled to report allocations per call.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class InjectedCallBenchmark {
+    /**
+     * The simple name of the class in {@link dev.cbyrne.betterinject.benchmark.target} to call
+     */
+    @Param({"PlainTarget", "MixinTarget", "BetterInjectTarget"})
+    public String target;
+
+    private BenchmarkTarget instance;
+    private int a = 17;
+    private int b = 42;
+    private Object object = new Object();
+
+    @Setup
+    public void setup() throws ReflectiveOperationException {
+        this.instance = MixinHarness.createTarget(this.target);
+    }
+
+    @Benchmark
+    public void head() {
+        this.instance.head(this.a, this.b);
+    }
+
+    @Benchmark
+    public void headShared() {
+        this.instance.headShared(this.a, this.b);
+    }
+
+    @Benchmark
+    public void headCancellable() {
+        this.instance.headCancellable(this.a, this.b);
+    }
+
+    @Benchmark
+    public void headCancellableBoolean() {
+        this.instance.headCancellableBoolean(this.a, this.b);
+    }
+
+    @Benchmark
+    public int headCancellableInt() {
+        return this.instance.headCancellableInt(this.a);
+    }
+
+    @Benchmark
+    public Object headCancellableObject() {
+        return this.instance.headCancellableObject(this.object);
+    }
+
+    @Benchmark
+    public int returnInt() {
+        return this.instance.returnInt(this.a);
+    }
+
+    @Benchmark
+    public Object returnObject() {
+        return this.instance.returnObject(this.object);
+    }
+
+    @Benchmark
+    public int captureArg() {
+        return this.instance.captureArg(this.a, this.b);
+    }
+
+    @Benchmark
+    public int captureLocal() {
+        return this.instance.captureLocal(this.a);
+    }
+}
@@ -0,0 +1,56 @@
+package dev.cbyrne.betterinject.benchmark.harness;
+
+import org.spongepowered.asm.service.IGlobalPropertyService;
+import org.spongepowered.asm.service.IPropertyKey;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A simple in-memory property store for Mixin, as there is no launcher to provide one.
+ */
+public class BenchmarkGlobalPropertyService implements IGlobalPropertyService {
+    private final Map<String, Object> properties = new HashMap<>();
+
+    @Override
+    public IPropertyKey resolveKey(String name) {
+        return new Key(name);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T getProperty(IPropertyKey key) {
+        return (T) this.properties.get(key.toString());
+    }
+
+    @Override
+    public void setProperty(IPropertyKey key, Object value) {
+        this.properties.put(key.toString(), value);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T getProperty(IPropertyKey key, T defaultValue) {
+        Object value = this.properties.get(key.toString());
+        return value != null ? (T) value : defaultValue;
+    }
+
+    @Override
+    public String getPropertyString(IPropertyKey key, String defaultValue) {
+        Object value = this.properties.get(key.toString());
+        return value != null ? value.toString() : defaultValue;
+    }
+
+    private static class Key implements IPropertyKey {
+        private final String name;
+
+        private Key(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public String toString() {
+            return this.name;
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package dev.cbyrne.betterinject.benchmark.harness;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.tree.ClassNode;
+import org.spongepowered.asm.launch.platform.container.ContainerHandleVirtual;
+import org.spongepowered.asm.launch.platform.container.IContainerHandle;
+import org.spongepowered.asm.mixin.transformer.IMixinTransformerFactory;
+import org.spongepowered.asm.service.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.Collection;
+import java.util.Collections;
+
+/**
+ * A minimal Mixin service which reads classes from the benchmark's own classpath.
+ * <p/>
+ * There is no launcher here, so {@link MixinHarness} takes the transformer factory which Mixin offers to us, and
+ * transforms the target classes itself.
+ */
+public class BenchmarkMixinService extends MixinServiceAbstract implements IClassProvider, IClassBytecodeProvider, IClassTracker, ITransformerProvider {
+    static IMixinTransformerFactory transformerFactory;
+
+    @Override
+    public String getName() {
+        return "BetterInject Benchmark";
+    }
+
+    @Override
+    public boolean isValid() {
+        return true;
+    }
+
+    @Override
+    public void offer(IMixinInternal internal) {
+        if (internal instanceof IMixinTransformerFactory) {
+            transformerFactory = (IMixinTransformerFactory) internal;
+        }
+
+        super.offer(internal);
+    }
+
+    @Override
+    public IClassProvider getClassProvider() {
+        return this;
+    }
+
+    @Override
+    public IClassBytecodeProvider getBytecodeProvider() {
+        return this;
+    }
+
+    @Override
+    public ITransformerProvider getTransformerProvider() {
+        return this;
+    }
+
+    @Override
+    public IClassTracker getClassTracker() {
+        return this;
+    }
+
+    @Override
+    public IMixinAuditTrail getAuditTrail() {
+        return null;
+    }
+
+    @Override
+    public Collection<String> getPlatformAgents() {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public IContainerHandle getPrimaryContainer() {
+        return new ContainerHandleVirtual(this.getName());
+    }
+
+    @Override
+    public InputStream getResourceAsStream(String name) {
+        InputStream generated = MixinHarness.getGeneratedResource(name);
+        if (generated != null) {
+            return generated;
+        }
+
+        return BenchmarkMixinService.class.getClassLoader().getResourceAsStream(name);
+    }
+
+    // IClassProvider
+
+    @Override
+    @Deprecated
+    public URL[] getClassPath() {
+        return new URL[0];
+    }
+
+    @Override
+    public Class<?> findClass(String name) throws ClassNotFoundException {
+        return this.findClass(name, true);
+    }
+
+    @Override
+    public Class<?> findClass(String name, boolean initialize) throws ClassNotFoundException {
+        // Mixin only reads the target classes as bytes, it never needs them to be loaded with their mixins applied
+        return Class.forName(name, initialize, BenchmarkMixinService.class.getClassLoader());
+    }
+
+    @Override
+    public Class<?> findAgentClass(String name, boolean initialize) throws ClassNotFoundException {
+        return Class.forName(name, initialize, BenchmarkMixinService.class.getClassLoader());
+    }
+
+    // IClassBytecodeProvider
+
+    @Override
+    public ClassNode getClassNode(String name) throws ClassNotFoundException, IOException {
+        return this.getClassNode(name, true);
+    }
+
+    @Override
+    public ClassNode getClassNode(String name, boolean runTransformers) throws ClassNotFoundException, IOException {
+        byte[] bytes = MixinHarness.readClassBytes(name);
+        if (bytes == null) {
+            throw new ClassNotFoundException(name);
+        }
+
+        ClassNode classNode = new ClassNode();
+        new ClassReader(bytes).accept(classNode, ClassReader.EXPAND_FRAMES);
+        return classNode;
+    }
+
+    // IClassTracker
+
+    @Override
+    public void registerInvalidClass(String className) {
+    }
+
+    @Override
+    public boolean isClassLoaded(String className) {
+        return false;
+    }
+
+    @Override
+    public String getClassRestrictions(String className) {
+        return "";
+    }
+
+    // ITransformerProvider
+
+    @Override
+    public Collection<ITransformer> getTransformers() {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public Collection<ITransformer> getDelegatedTransformers() {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public void addTransformerExclusion(String name) {
+    }
+}
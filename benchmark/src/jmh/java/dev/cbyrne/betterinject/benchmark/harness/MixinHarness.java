@@ -0,0 +1,187 @@
+package dev.cbyrne.betterinject.benchmark.harness;
+
+import dev.cbyrne.betterinject.BetterInject;
+import dev.cbyrne.betterinject.benchmark.BenchmarkTarget;
+import org.spongepowered.asm.launch.MixinBootstrap;
+import org.spongepowered.asm.mixin.MixinEnvironment;
+import org.spongepowered.asm.mixin.Mixins;
+import org.spongepowered.asm.mixin.transformer.IMixinTransformer;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Boots Mixin in-process, and loads the benchmark's target classes with their mixins applied.
+ */
+public class MixinHarness {
+    private static final String TARGET_PACKAGE = "dev.cbyrne.betterinject.benchmark.target.";
+
+    /**
+     * Classes and resources which only exist in memory, such as the synthetic targets and their mixins
+     */
+    private static final Map<String, byte[]> GENERATED_RESOURCES = new ConcurrentHashMap<>();
+    private static final List<String> EXTRA_CONFIGURATIONS = new ArrayList<>();
+
+    private static IMixinTransformer transformer;
+    private static TransformingClassLoader classLoader;
+
+    /**
+     * Creates a new instance of a target class, after BetterInject and Mixin have been applied to it.
+     *
+     * @param name The simple name of a class in {@link #TARGET_PACKAGE}
+     */
+    public static synchronized BenchmarkTarget createTarget(String name) throws ReflectiveOperationException {
+        if (classLoader == null) {
+            classLoader = new TransformingClassLoader(getTransformer());
+        }
+
+        Class<?> targetClass = Class.forName(TARGET_PACKAGE + name, true, classLoader);
+        return (BenchmarkTarget) targetClass.getDeclaredConstructor().newInstance();
+    }
+
+    /**
+     * Makes a class or resource available to Mixin, without it existing on the classpath.
+     *
+     * @param path The resource path, e.g. {@code dev/cbyrne/Example.class}
+     */
+    public static void addGeneratedResource(String path, byte[] bytes) {
+        GENERATED_RESOURCES.put(path, bytes);
+    }
+
+    /**
+     * Adds a mixin configuration alongside the benchmark's own. Mixin only selects configurations before it transforms
+     * its first class, so this must be called before anything is transformed.
+     */
+    public static synchronized void addConfiguration(String config) {
+        if (transformer != null) {
+            throw new IllegalStateException("Mixin has already been bootstrapped, " + config + " would not be selected");
+        }
+
+        EXTRA_CONFIGURATIONS.add(config);
+    }
+
+    /**
+     * Applies BetterInject and Mixin to a class, without loading it.
+     *
+     * @param name The binary name of the class, e.g. {@code dev.cbyrne.Example}
+     */
+    public static byte[] transform(String name, byte[] bytes) {
+        return getTransformer().transformClassBytes(name, name, bytes);
+    }
+
+    static InputStream getGeneratedResource(String path) {
+        byte[] bytes = GENERATED_RESOURCES.get(path);
+        return bytes == null ? null : new ByteArrayInputStream(bytes);
+    }
+
+    static byte[] readClassBytes(String name) throws IOException {
+        String path = name.replace('.', '/') + ".class";
+        byte[] generated = GENERATED_RESOURCES.get(path);
+        if (generated != null) {
+            return generated;
+        }
+
+        try (InputStream stream = MixinHarness.class.getClassLoader().getResourceAsStream(path)) {
+            if (stream == null) {
+                return null;
+            }
+
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = stream.read(buffer)) != -1) {
+                output.write(buffer, 0, read);
+            }
+
+            return output.toByteArray();
+        }
+    }
+
+    private static synchronized IMixinTransformer getTransformer() {
+        if (transformer == null) {
+            transformer = bootstrap();
+        }
+
+        return transformer;
+    }
+
+    private static IMixinTransformer bootstrap() {
+        MixinBootstrap.init();
+        BetterInject.initialize();
+        Mixins.addConfiguration("betterinject.benchmark.mixins.json");
+        for (String config : EXTRA_CONFIGURATIONS) {
+            Mixins.addConfiguration(config);
+        }
+
+        // There is no launcher to move us through the phases, so we have to do it ourselves
+        try {
+            Method gotoPhase = MixinEnvironment.class.getDeclaredMethod("gotoPhase", MixinEnvironment.Phase.class);
+            gotoPhase.setAccessible(true);
+            gotoPhase.invoke(null, MixinEnvironment.Phase.INIT);
+            gotoPhase.invoke(null, MixinEnvironment.Phase.DEFAULT);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Failed to move Mixin to the default phase", e);
+        }
+
+        if (BenchmarkMixinService.transformerFactory == null) {
+            throw new IllegalStateException("Mixin did not offer a transformer factory to the benchmark service");
+        }
+
+        return BenchmarkMixinService.transformerFactory.createTransformer();
+    }
+
+    /**
+     * Loads classes in {@link #TARGET_PACKAGE} itself, transforming them with Mixin. Everything else is loaded by the
+     * parent, so that the targets can be used through {@link BenchmarkTarget}.
+     */
+    private static class TransformingClassLoader extends ClassLoader {
+        private final IMixinTransformer transformer;
+
+        private TransformingClassLoader(IMixinTransformer transformer) {
+            super(MixinHarness.class.getClassLoader());
+            this.transformer = transformer;
+        }
+
+        @Override
+        protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+            if (!name.startsWith(TARGET_PACKAGE)) {
+                return super.loadClass(name, resolve);
+            }
+
+            synchronized (this.getClassLoadingLock(name)) {
+                Class<?> loaded = this.findLoadedClass(name);
+                if (loaded == null) {
+                    loaded = this.findClass(name);
+                }
+
+                if (resolve) {
+                    this.resolveClass(loaded);
+                }
+
+                return loaded;
+            }
+        }
+
+        @Override
+        protected Class<?> findClass(String name) throws ClassNotFoundException {
+            try {
+                byte[] bytes = readClassBytes(name);
+                if (bytes == null) {
+                    throw new ClassNotFoundException(name);
+                }
+
+                byte[] transformed = this.transformer.transformClassBytes(name, name, bytes);
+                return this.defineClass(name, transformed, 0, transformed.length);
+            } catch (IOException e) {
+                throw new ClassNotFoundException(name, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package dev.cbyrne.betterinject.benchmark.mixin;
+
+import dev.cbyrne.betterinject.annotations.Arg;
+import dev.cbyrne.betterinject.annotations.Inject;
+import dev.cbyrne.betterinject.annotations.Local;
+import dev.cbyrne.betterinject.benchmark.BenchmarkSink;
+import dev.cbyrne.betterinject.benchmark.target.BetterInjectTarget;
+import dev.cbyrne.betterinject.callback.CallbackInfoReturnableInt;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfoReturnable;
+
+@Mixin(value = BetterInjectTarget.class, remap = false)
+public class BetterInjectTargetMixin {
+    @Inject(method = "head", at = @At("HEAD"))
+    private void onHead(CallbackInfo ci) {
+        BenchmarkSink.value += ci.isCancellable() ? 2 : 1;
+    }
+
+    @Inject(method = "headShared", at = @At("HEAD"), shareCallbackInfo = true)
+    private void onHeadShared(CallbackInfo ci) {
+        BenchmarkSink.value += ci.isCancellable() ? 2 : 1;
+    }
+
+    @Inject(method = "headCancellable", at = @At("HEAD"), cancellable = true)
+    private void onHeadCancellable(CallbackInfo ci) {
+        if (BenchmarkSink.value == Integer.MIN_VALUE) {
+            ci.cancel();
+        }
+    }
+
+    @Inject(method = "headCancellableBoolean", at = @At("HEAD"), cancellable = true)
+    private boolean onHeadCancellableBoolean() {
+        return BenchmarkSink.value == Integer.MIN_VALUE;
+    }
+
+    @Inject(method = "headCancellableInt", at = @At("HEAD"), cancellable = true)
+    private void onHeadCancellableInt(CallbackInfoReturnableInt cir) {
+        if (BenchmarkSink.value == Integer.MIN_VALUE) {
+            cir.setReturnValue(0);
+        }
+    }
+
+    @Inject(method = "headCancellableObject", at = @At("HEAD"), cancellable = true)
+    private void onHeadCancellableObject(CallbackInfoReturnable<Object> cir) {
+        if (BenchmarkSink.value == Integer.MIN_VALUE) {
+            cir.setReturnValue(null);
+        }
+    }
+
+    @Inject(method = "returnInt", at = @At("RETURN"))
+    private void onReturnInt(CallbackInfoReturnable<Integer> cir) {
+        BenchmarkSink.value += cir.getReturnValue();
+    }
+
+    @Inject(method = "returnObject", at = @At("RETURN"))
+    private void onReturnObject(CallbackInfoReturnable<Object> cir) {
+        BenchmarkSink.value += cir.getReturnValue() != null ? 1 : 0;
+    }
+
+    @Inject(method = "captureArg", at = @At("HEAD"))
+    private void onCaptureArg(@Arg(ordinal = 1) int b) {
+        BenchmarkSink.value += b;
+    }
+
+    @Inject(method = "captureLocal", at = @At("RETURN"))
+    private void onCaptureLocal(@Local(ordinal = 0) int local) {
+        BenchmarkSink.value += local;
+    }
+}
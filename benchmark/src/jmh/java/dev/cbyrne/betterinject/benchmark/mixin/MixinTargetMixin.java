@@ -0,0 +1,75 @@
+package dev.cbyrne.betterinject.benchmark.mixin;
+
+import dev.cbyrne.betterinject.benchmark.BenchmarkSink;
+import dev.cbyrne.betterinject.benchmark.target.MixinTarget;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfoReturnable;
+import org.spongepowered.asm.mixin.injection.callback.LocalCapture;
+
+/**
+ * The baseline, using Mixin's own {@code @Inject}. Mixin has no equivalent of {@code shareCallbackInfo} or boolean
+ * handlers, so those targets are hooked the same way as their plain versions.
+ */
+@Mixin(value = MixinTarget.class, remap = false)
+public class MixinTargetMixin {
+    @Inject(method = "head", at = @At("HEAD"))
+    private void onHead(CallbackInfo ci) {
+        BenchmarkSink.value += ci.isCancellable() ? 2 : 1;
+    }
+
+    @Inject(method = "headShared", at = @At("HEAD"))
+    private void onHeadShared(CallbackInfo ci) {
+        BenchmarkSink.value += ci.isCancellable() ? 2 : 1;
+    }
+
+    @Inject(method = "headCancellable", at = @At("HEAD"), cancellable = true)
+    private void onHeadCancellable(CallbackInfo ci) {
+        if (BenchmarkSink.value == Integer.MIN_VALUE) {
+            ci.cancel();
+        }
+    }
+
+    @Inject(method = "headCancellableBoolean", at = @At("HEAD"), cancellable = true)
+    private void onHeadCancellableBoolean(CallbackInfo ci) {
+        if (BenchmarkSink.value == Integer.MIN_VALUE) {
+            ci.cancel();
+        }
+    }
+
+    @Inject(method = "headCancellableInt", at = @At("HEAD"), cancellable = true)
+    private void onHeadCancellableInt(CallbackInfoReturnable<Integer> cir) {
+        if (BenchmarkSink.value == Integer.MIN_VALUE) {
+            cir.setReturnValue(0);
+        }
+    }
+
+    @Inject(method = "headCancellableObject", at = @At("HEAD"), cancellable = true)
+    private void onHeadCancellableObject(CallbackInfoReturnable<Object> cir) {
+        if (BenchmarkSink.value == Integer.MIN_VALUE) {
+            cir.setReturnValue(null);
+        }
+    }
+
+    @Inject(method = "returnInt", at = @At("RETURN"))
+    private void onReturnInt(CallbackInfoReturnable<Integer> cir) {
+        BenchmarkSink.value += cir.getReturnValue();
+    }
+
+    @Inject(method = "returnObject", at = @At("RETURN"))
+    private void onReturnObject(CallbackInfoReturnable<Object> cir) {
+        BenchmarkSink.value += cir.getReturnValue() != null ? 1 : 0;
+    }
+
+    @Inject(method = "captureArg", at = @At("HEAD"))
+    private void onCaptureArg(int a, int b, CallbackInfoReturnable<Integer> cir) {
+        BenchmarkSink.value += b;
+    }
+
+    @Inject(method = "captureLocal", at = @At("RETURN"), locals = LocalCapture.CAPTURE_FAILHARD)
+    private void onCaptureLocal(int a, CallbackInfoReturnable<Integer> cir, int local) {
+        BenchmarkSink.value += local;
+    }
+}
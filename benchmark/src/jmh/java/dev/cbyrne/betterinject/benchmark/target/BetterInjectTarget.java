@@ -0,0 +1,61 @@
+package dev.cbyrne.betterinject.benchmark.target;
+
+import dev.cbyrne.betterinject.benchmark.BenchmarkTarget;
+
+/**
+ * Hooked with BetterInject's {@code @Inject}, see {@link dev.cbyrne.betterinject.benchmark.mixin.BetterInjectTargetMixin}.
+ */
+public class BetterInjectTarget implements BenchmarkTarget {
+    private int counter;
+
+    @Override
+    public void head(int a, int b) {
+        this.counter += a + b;
+    }
+
+    @Override
+    public void headShared(int a, int b) {
+        this.counter += a + b;
+    }
+
+    @Override
+    public void headCancellable(int a, int b) {
+        this.counter += a + b;
+    }
+
+    @Override
+    public void headCancellableBoolean(int a, int b) {
+        this.counter += a + b;
+    }
+
+    @Override
+    public int headCancellableInt(int a) {
+        return a * 31 + this.counter;
+    }
+
+    @Override
+    public Object headCancellableObject(Object a) {
+        return a;
+    }
+
+    @Override
+    public int returnInt(int a) {
+        return a * 31 + this.counter;
+    }
+
+    @Override
+    public Object returnObject(Object a) {
+        return a;
+    }
+
+    @Override
+    public int captureArg(int a, int b) {
+        return a + b + this.counter;
+    }
+
+    @Override
+    public int captureLocal(int a) {
+        int local = a * 31;
+        return local + this.counter;
+    }
+}
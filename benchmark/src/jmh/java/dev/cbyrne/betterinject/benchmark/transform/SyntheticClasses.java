@@ -0,0 +1,378 @@
+package dev.cbyrne.betterinject.benchmark.transform;
+
+import dev.cbyrne.betterinject.annotations.Arg;
+import dev.cbyrne.betterinject.annotations.Inject;
+import dev.cbyrne.betterinject.annotations.Local;
+import dev.cbyrne.betterinject.annotations.ReturnValue;
+import dev.cbyrne.betterinject.benchmark.BenchmarkSink;
+import org.objectweb.asm.AnnotationVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfoReturnable;
+
+import java.util.List;
+
+/**
+ * Generates target classes, and the BetterInject mixins which hook them, so that the transformer can be measured on far
+ * more classes than could be written by hand.
+ * <p/>
+ * Every target has the same four methods, and {@code compute} has between zero and two extra parameters. Each mixin
+ * hooks every method once, and the shape of each handler (where it is injected, and what it captures) depends on the
+ * index of the class, so that neighbouring classes are never hooked in the same way.
+ * <pre>
+ * public class Synthetic0 {
+ *     public int compute(int a, long b, Object c, ...) {
+ *         int x = a * 2;
+ *         long y = b + x;
+ *         if (a > 0) {
+ *             return x;
+ *         }
+ *         return (int) y;
+ *     }
+ *
+ *     public Object describe(Object o, int n) {
+ *         String s = String.valueOf(o);
+ *         if (n > 0) {
+ *             return s;
+ *         }
+ *         return o;
+ *     }
+ *
+ *     public void tick(int n) {
+ *         int k = n + 1;
+ *         BenchmarkSink.value += k;
+ *     }
+ *
+ *     public static double scale(double d, float f) {
+ *         return d * f;
+ *     }
+ * }
+ * </pre>
+ * This is deterministic, the same prefix and index always produce the same bytes.
+ */
+public class SyntheticClasses {
+    public static final String TARGET_PACKAGE = "dev.cbyrne.betterinject.benchmark.synthetic.";
+    public static final String MIXIN_PACKAGE = TARGET_PACKAGE + "mixin.";
+
+    /**
+     * The number of handlers in each mixin, one for each target method
+     */
+    public static final int HANDLERS_PER_CLASS = 4;
+
+    private static final String SINK = Type.getInternalName(BenchmarkSink.class);
+    private static final String CALLBACK_INFO = Type.getDescriptor(CallbackInfo.class);
+    private static final String CALLBACK_INFO_RETURNABLE = Type.getDescriptor(CallbackInfoReturnable.class);
+    private static final String ARG = Type.getDescriptor(Arg.class);
+    private static final String LOCAL = Type.getDescriptor(Local.class);
+    private static final String RETURN_VALUE = Type.getDescriptor(ReturnValue.class);
+
+    /**
+     * The handler shapes for each target method, indexed by (class index + method index) % 4
+     */
+    private static final Handler[][] HANDLERS = new Handler[][]{
+        {
+            new Handler("compute", "HEAD", "(" + CALLBACK_INFO_RETURNABLE + ")V"),
+            new Handler("compute", "HEAD", "(I)V").capture(ARG),
+            new Handler("compute", "RETURN", "(I)V").capture(LOCAL),
+            new Handler("compute", "RETURN", "(I)V").capture(RETURN_VALUE),
+        },
+        {
+            new Handler("describe", "RETURN", "(" + CALLBACK_INFO_RETURNABLE + ")V"),
+            new Handler("describe", "HEAD", "(Ljava/lang/Object;)V").capture(ARG),
+            new Handler("describe", "RETURN", "(Ljava/lang/String;)V").capture(LOCAL),
+            new Handler("describe", "HEAD", "(Ljava/lang/Object;I)V").capture(ARG, ARG).with("trampoline"),
+        },
+        {
+            new Handler("tick", "HEAD", "(" + CALLBACK_INFO + ")V").with("cancellable"),
+            new Handler("tick", "HEAD", "()Z").with("cancellable"),
+            new Handler("tick", "RETURN", "(I)V").capture(LOCAL),
+            new Handler("tick", "HEAD", "(" + CALLBACK_INFO + ")V").with("shareCallbackInfo"),
+        },
+        {
+            new Handler("scale", "HEAD", "()V").asStatic(),
+            new Handler("scale", "RETURN", "(D)V").capture(RETURN_VALUE).asStatic(),
+            new Handler("scale", "HEAD", "(F)V").capture(ARG).asStatic(),
+            new Handler("scale", "RETURN", "()V").with("profile").asStatic(),
+        },
+    };
+
+    public static String targetName(String prefix, int index) {
+        return TARGET_PACKAGE + prefix + index;
+    }
+
+    public static String mixinName(String prefix, int index) {
+        return MIXIN_PACKAGE + prefix + index + "Mixin";
+    }
+
+    /**
+     * Generates a mixin configuration containing the mixins for each of these classes.
+     */
+    public static String generateConfig(String prefix, List<Integer> indexes) {
+        StringBuilder mixins = new StringBuilder();
+        for (int index : indexes) {
+            if (mixins.length() > 0) {
+                mixins.append(",\n");
+            }
+
+            mixins.append("    \"").append(mixinName(prefix, index).substring(MIXIN_PACKAGE.length())).append('"');
+        }
+
+        return "{\n"
+            + "  \"required\": true,\n"
+            + "  \"minVersion\": \"0.8\",\n"
+            + "  \"package\": \"" + MIXIN_PACKAGE.substring(0, MIXIN_PACKAGE.length() - 1) + "\",\n"
+            + "  \"compatibilityLevel\": \"JAVA_8\",\n"
+            + "  \"mixins\": [\n" + mixins + "\n  ],\n"
+            + "  \"injectors\": {\n"
+            + "    \"defaultRequire\": 1\n"
+            + "  }\n"
+            + "}\n";
+    }
+
+    public static byte[] generateTarget(String prefix, int index) {
+        ClassWriter writer = new FrameComputingWriter();
+        writer.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC | Opcodes.ACC_SUPER, internalName(targetName(prefix, index)), null, "java/lang/Object", null);
+        generateConstructor(writer);
+
+        // public int compute(int a, long b, Object c, ...)
+        int extraArguments = index % 3;
+        StringBuilder computeDesc = new StringBuilder("(IJLjava/lang/Object;");
+        for (int i = 0; i < extraArguments; i++) {
+            computeDesc.append('I');
+        }
+
+        int x = 5 + extraArguments;
+        int y = x + 1;
+        MethodVisitor compute = writer.visitMethod(Opcodes.ACC_PUBLIC, "compute", computeDesc.append(")I").toString(), null, null);
+        Label computeStart = new Label();
+        Label computeElse = new Label();
+        Label computeEnd = new Label();
+        compute.visitCode();
+        compute.visitVarInsn(Opcodes.ILOAD, 1);
+        compute.visitInsn(Opcodes.ICONST_2);
+        compute.visitInsn(Opcodes.IMUL);
+        compute.visitVarInsn(Opcodes.ISTORE, x);
+        compute.visitVarInsn(Opcodes.LLOAD, 2);
+        compute.visitVarInsn(Opcodes.ILOAD, x);
+        compute.visitInsn(Opcodes.I2L);
+        compute.visitInsn(Opcodes.LADD);
+        compute.visitVarInsn(Opcodes.LSTORE, y);
+        compute.visitLabel(computeStart);
+        compute.visitVarInsn(Opcodes.ILOAD, 1);
+        compute.visitJumpInsn(Opcodes.IFLE, computeElse);
+        compute.visitVarInsn(Opcodes.ILOAD, x);
+        compute.visitInsn(Opcodes.IRETURN);
+        compute.visitLabel(computeElse);
+        compute.visitVarInsn(Opcodes.LLOAD, y);
+        compute.visitInsn(Opcodes.L2I);
+        compute.visitInsn(Opcodes.IRETURN);
+        compute.visitLabel(computeEnd);
+        compute.visitLocalVariable("x", "I", null, computeStart, computeEnd, x);
+        compute.visitLocalVariable("y", "J", null, computeStart, computeEnd, y);
+        compute.visitMaxs(0, 0);
+        compute.visitEnd();
+
+        // public Object describe(Object o, int n)
+        MethodVisitor describe = writer.visitMethod(Opcodes.ACC_PUBLIC, "describe", "(Ljava/lang/Object;I)Ljava/lang/Object;", null, null);
+        Label describeStart = new Label();
+        Label describeElse = new Label();
+        Label describeEnd = new Label();
+        describe.visitCode();
+        describe.visitVarInsn(Opcodes.ALOAD, 1);
+        describe.visitMethodInsn(Opcodes.INVOKESTATIC, "java/lang/String", "valueOf", "(Ljava/lang/Object;)Ljava/lang/String;", false);
+        describe.visitVarInsn(Opcodes.ASTORE, 3);
+        describe.visitLabel(describeStart);
+        describe.visitVarInsn(Opcodes.ILOAD, 2);
+        describe.visitJumpInsn(Opcodes.IFLE, describeElse);
+        describe.visitVarInsn(Opcodes.ALOAD, 3);
+        describe.visitInsn(Opcodes.ARETURN);
+        describe.visitLabel(describeElse);
+        describe.visitVarInsn(Opcodes.ALOAD, 1);
+        describe.visitInsn(Opcodes.ARETURN);
+        describe.visitLabel(describeEnd);
+        describe.visitLocalVariable("s", "Ljava/lang/String;", null, describeStart, describeEnd, 3);
+        describe.visitMaxs(0, 0);
+        describe.visitEnd();
+
+        // public void tick(int n)
+        MethodVisitor tick = writer.visitMethod(Opcodes.ACC_PUBLIC, "tick", "(I)V", null, null);
+        Label tickStart = new Label();
+        Label tickEnd = new Label();
+        tick.visitCode();
+        tick.visitVarInsn(Opcodes.ILOAD, 1);
+        tick.visitInsn(Opcodes.ICONST_1);
+        tick.visitInsn(Opcodes.IADD);
+        tick.visitVarInsn(Opcodes.ISTORE, 2);
+        tick.visitLabel(tickStart);
+        tick.visitFieldInsn(Opcodes.GETSTATIC, SINK, "value", "I");
+        tick.visitVarInsn(Opcodes.ILOAD, 2);
+        tick.visitInsn(Opcodes.IADD);
+        tick.visitFieldInsn(Opcodes.PUTSTATIC, SINK, "value", "I");
+        tick.visitInsn(Opcodes.RETURN);
+        tick.visitLabel(tickEnd);
+        tick.visitLocalVariable("k", "I", null, tickStart, tickEnd, 2);
+        tick.visitMaxs(0, 0);
+        tick.visitEnd();
+
+        // public static double scale(double d, float f)
+        MethodVisitor scale = writer.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, "scale", "(DF)D", null, null);
+        scale.visitCode();
+        scale.visitVarInsn(Opcodes.DLOAD, 0);
+        scale.visitVarInsn(Opcodes.FLOAD, 2);
+        scale.visitInsn(Opcodes.F2D);
+        scale.visitInsn(Opcodes.DMUL);
+        scale.visitInsn(Opcodes.DRETURN);
+        scale.visitMaxs(0, 0);
+        scale.visitEnd();
+
+        writer.visitEnd();
+        return writer.toByteArray();
+    }
+
+    public static byte[] generateMixin(String prefix, int index) {
+        ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        writer.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC | Opcodes.ACC_SUPER, internalName(mixinName(prefix, index)), null, "java/lang/Object", null);
+
+        // @Mixin(value = SyntheticN.class, remap = false)
+        AnnotationVisitor mixin = writer.visitAnnotation(Type.getDescriptor(Mixin.class), false);
+        AnnotationVisitor targets = mixin.visitArray("value");
+        targets.visit(null, Type.getObjectType(internalName(targetName(prefix, index))));
+        targets.visitEnd();
+        mixin.visit("remap", false);
+        mixin.visitEnd();
+
+        generateConstructor(writer);
+        for (int method = 0; method < HANDLERS.length; method++) {
+            HANDLERS[method][(index + method) % HANDLERS[method].length].generate(writer);
+        }
+
+        writer.visitEnd();
+        return writer.toByteArray();
+    }
+
+    private static void generateConstructor(ClassWriter writer) {
+        MethodVisitor constructor = writer.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "()V", null, null);
+        constructor.visitCode();
+        constructor.visitVarInsn(Opcodes.ALOAD, 0);
+        constructor.visitMethodInsn(Opcodes.INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false);
+        constructor.visitInsn(Opcodes.RETURN);
+        constructor.visitMaxs(0, 0);
+        constructor.visitEnd();
+    }
+
+    private static String internalName(String name) {
+        return name.replace('.', '/');
+    }
+
+    /**
+     * The shape of one generated handler. Every handler adds one to {@link BenchmarkSink#value}, so that it is never
+     * removed as a no-op.
+     */
+    private static class Handler {
+        private final String target;
+        private final String at;
+        private final String descriptor;
+        private String[] captures = new String[0];
+        private String flag = null;
+        private boolean isStatic = false;
+
+        private Handler(String target, String at, String descriptor) {
+            this.target = target;
+            this.at = at;
+            this.descriptor = descriptor;
+        }
+
+        /**
+         * Annotates each parameter with @Arg, @Local or @ReturnValue. @Arg and @Local capture the first of their type.
+         */
+        private Handler capture(String... captures) {
+            this.captures = captures;
+            return this;
+        }
+
+        /**
+         * Sets a boolean member of @Inject to true
+         */
+        private Handler with(String flag) {
+            this.flag = flag;
+            return this;
+        }
+
+        private Handler asStatic() {
+            this.isStatic = true;
+            return this;
+        }
+
+        private void generate(ClassWriter writer) {
+            int access = Opcodes.ACC_PRIVATE | (this.isStatic ? Opcodes.ACC_STATIC : 0);
+            String name = "on" + Character.toUpperCase(this.target.charAt(0)) + this.target.substring(1);
+            MethodVisitor method = writer.visitMethod(access, name, this.descriptor, null, null);
+
+            // @Inject(method = "target", at = @At("HEAD"), remap = false)
+            AnnotationVisitor inject = method.visitAnnotation(Type.getDescriptor(Inject.class), true);
+            AnnotationVisitor methods = inject.visitArray("method");
+            methods.visit(null, this.target);
+            methods.visitEnd();
+            AnnotationVisitor ats = inject.visitArray("at");
+            AnnotationVisitor at = ats.visitAnnotation(null, Type.getDescriptor(At.class));
+            at.visit("value", this.at);
+            at.visitEnd();
+            ats.visitEnd();
+            inject.visit("remap", false);
+            if (this.flag != null) {
+                inject.visit(this.flag, true);
+            }
+            inject.visitEnd();
+
+            if (this.captures.length > 0) {
+                method.visitAnnotableParameterCount(this.captures.length, true);
+                for (int i = 0; i < this.captures.length; i++) {
+                    AnnotationVisitor capture = method.visitParameterAnnotation(i, this.captures[i], true);
+                    if (!this.captures[i].equals(RETURN_VALUE)) {
+                        capture.visit("ordinal", 0);
+                    }
+                    capture.visitEnd();
+                }
+            }
+
+            // BenchmarkSink.value += 1;
+            method.visitCode();
+            method.visitFieldInsn(Opcodes.GETSTATIC, SINK, "value", "I");
+            method.visitInsn(Opcodes.ICONST_1);
+            method.visitInsn(Opcodes.IADD);
+            method.visitFieldInsn(Opcodes.PUTSTATIC, SINK, "value", "I");
+
+            Type returnType = Type.getReturnType(this.descriptor);
+            if (returnType.equals(Type.BOOLEAN_TYPE)) {
+                // Never cancel
+                method.visitInsn(Opcodes.ICONST_0);
+                method.visitInsn(Opcodes.IRETURN);
+            } else {
+                method.visitInsn(Opcodes.RETURN);
+            }
+
+            method.visitMaxs(0, 0);
+            method.visitEnd();
+        }
+    }
+
+    /**
+     * Computes frames without loading any classes, the generated targets only ever merge frames of the same types.
+     */
+    private static class FrameComputingWriter extends ClassWriter {
+        private FrameComputingWriter() {
+            super(ClassWriter.COMPUTE_FRAMES);
+        }
+
+        @Override
+        protected String getCommonSuperClass(String type1, String type2) {
+            return "java/lang/Object";
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package dev.cbyrne.betterinject.benchmark.transform;
+
+import dev.cbyrne.betterinject.benchmark.harness.MixinHarness;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Measures how quickly BetterInject is applied to classes, rather than how quickly the injected code runs.
+ * <p/>
+ * Thousands of {@link SyntheticClasses} are transformed by Mixin in-process, and the number of injections per second and
+ * the bytes allocated per injection are reported.
+ * <p/>
+ * This is not a JMH benchmark, as Mixin can only transform each class once, and it only selects mixins before the first
+ * class is transformed. Every class that will be transformed has to be generated up front.
+ * <pre>
+ * ./gradlew :benchmark:transformBenchmark -Pbetterinject.transform.classes=5000
+ * </pre>
+ */
+public class TransformBenchmark {
+    private static final String WARMUP_PREFIX = "Warmup";
+    private static final String MEASURED_PREFIX = "Synthetic";
+
+    public static void main(String[] args) {
+        int classes = Integer.getInteger("betterinject.transform.classes", 5000);
+        int warmupClasses = Integer.getInteger("betterinject.transform.warmup", 1000);
+
+        List<byte[]> warmupTargets = generate(WARMUP_PREFIX, warmupClasses);
+        List<byte[]> measuredTargets = generate(MEASURED_PREFIX, classes);
+
+        transformAll(WARMUP_PREFIX, warmupTargets);
+
+        long allocatedBefore = allocatedBytes();
+        long start = System.nanoTime();
+        transformAll(MEASURED_PREFIX, measuredTargets);
+        long elapsed = System.nanoTime() - start;
+        long allocated = allocatedBytes() - allocatedBefore;
+
+        long injections = (long) classes * SyntheticClasses.HANDLERS_PER_CLASS;
+        System.out.printf("Transformed %d classes (%d injections) in %.2f ms%n", classes, injections, elapsed / 1e6);
+        System.out.printf("  %.0f injections/s%n", injections / (elapsed / 1e9));
+        if (allocatedBefore >= 0) {
+            System.out.printf("  %.0f bytes allocated/injection%n", (double) allocated / injections);
+        }
+    }
+
+    /**
+     * Generates the targets and mixins, and registers the mixins in their own configuration.
+     *
+     * @return The bytes of each target
+     */
+    private static List<byte[]> generate(String prefix, int count) {
+        List<byte[]> targets = new ArrayList<>(count);
+        List<Integer> indexes = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            byte[] target = SyntheticClasses.generateTarget(prefix, i);
+            MixinHarness.addGeneratedResource(resourcePath(SyntheticClasses.targetName(prefix, i)), target);
+            MixinHarness.addGeneratedResource(
+                resourcePath(SyntheticClasses.mixinName(prefix, i)),
+                SyntheticClasses.generateMixin(prefix, i)
+            );
+
+            targets.add(target);
+            indexes.add(i);
+        }
+
+        String config = "betterinject.synthetic." + prefix.toLowerCase() + ".mixins.json";
+        MixinHarness.addGeneratedResource(config, SyntheticClasses.generateConfig(prefix, indexes).getBytes(StandardCharsets.UTF_8));
+        MixinHarness.addConfiguration(config);
+        return targets;
+    }
+
+    private static void transformAll(String prefix, List<byte[]> targets) {
+        for (int i = 0; i < targets.size(); i++) {
+            MixinHarness.transform(SyntheticClasses.targetName(prefix, i), targets.get(i));
+        }
+    }
+
+    /**
+     * The number of bytes this thread has allocated, or -1 if the JVM can not tell us
+     */
+    private static long allocatedBytes() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean sunThreads = (com.sun.management.ThreadMXBean) threads;
+            if (sunThreads.isThreadAllocatedMemorySupported() && sunThreads.isThreadAllocatedMemoryEnabled()) {
+                return sunThreads.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+
+        return -1;
+    }
+
+    private static String resourcePath(String name) {
+        return name.replace('.', '/') + ".class";
+    }
+}
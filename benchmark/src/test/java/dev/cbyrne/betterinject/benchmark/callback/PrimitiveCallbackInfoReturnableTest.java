@@ -0,0 +1,63 @@
+package dev.cbyrne.betterinject.benchmark.callback;
+
+import dev.cbyrne.betterinject.callback.*;
+import org.junit.jupiter.api.Test;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfoReturnable;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that the primitive CallbackInfoReturnables treat null like Mixin's CallbackInfoReturnable does, for handlers
+ * which only use its boxed API.
+ */
+public class PrimitiveCallbackInfoReturnableTest {
+    @Test
+    public void returnValueIsNullUntilSet() {
+        CallbackInfoReturnableInt cir = new CallbackInfoReturnableInt("test", true);
+        assertNull(cir.getReturnValue());
+        assertEquals(0, cir.getReturnValueI());
+
+        cir.setReturnValue(1);
+        assertEquals(Integer.valueOf(1), cir.getReturnValue());
+        assertEquals(Integer.valueOf(2), new CallbackInfoReturnableInt("test", true, 2).getReturnValue());
+    }
+
+    @Test
+    public void settingNullReturnsTheDefaultValue() {
+        CallbackInfoReturnableInt intCir = new CallbackInfoReturnableInt("test", true, 1);
+        setNull(intCir);
+        assertEquals(0, intCir.getReturnValueI());
+
+        CallbackInfoReturnableBoolean booleanCir = new CallbackInfoReturnableBoolean("test", true, true);
+        setNull(booleanCir);
+        assertFalse(booleanCir.getReturnValueZ());
+
+        CallbackInfoReturnableDouble doubleCir = new CallbackInfoReturnableDouble("test", true, 1.0D);
+        setNull(doubleCir);
+        assertEquals(0.0D, doubleCir.getReturnValueD());
+    }
+
+    @Test
+    public void everyPrimitiveTypeAcceptsNull() {
+        setNull(new CallbackInfoReturnableBoolean("test", true));
+        setNull(new CallbackInfoReturnableByte("test", true));
+        setNull(new CallbackInfoReturnableChar("test", true));
+        setNull(new CallbackInfoReturnableShort("test", true));
+        setNull(new CallbackInfoReturnableInt("test", true));
+        setNull(new CallbackInfoReturnableLong("test", true));
+        setNull(new CallbackInfoReturnableFloat("test", true));
+        setNull(new CallbackInfoReturnableDouble("test", true));
+    }
+
+    /**
+     * Sets the return value to null through the boxed API, as a handler taking a CallbackInfoReturnable would.
+     */
+    private static <T> void setNull(CallbackInfoReturnable<T> cir) {
+        cir.setReturnValue(null);
+        assertTrue(cir.isCancelled());
+        assertNull(cir.getReturnValue());
+    }
+}
@@ -0,0 +1,206 @@
+package dev.cbyrne.betterinject.benchmark.memoize;
+
+import dev.cbyrne.betterinject.annotations.Memoize;
+import dev.cbyrne.betterinject.benchmark.harness.MixinHarness;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.objectweb.asm.AnnotationVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Memoizes two overloads of a method with one handler, each of which needs its own cache field.
+ * <pre>
+ * public class MemoizedOverloads {
+ *     public static int calls;
+ *
+ *     public static int compute(int a) {
+ *         calls++;
+ *         return a * 2;
+ *     }
+ *
+ *     public static int compute(long a) {
+ *         calls++;
+ *         return (int) a * 3;
+ *     }
+ * }
+ *
+ * &#64;Mixin(value = MemoizedOverloads.class, remap = false)
+ * public class MemoizedOverloadsMixin {
+ *     &#64;Memoize(method = {"compute(I)I", "compute(J)I"}, at = &#64;At("RETURN"), remap = false)
+ *     private static void memoize() {
+ *     }
+ * }
+ * </pre>
+ */
+public class MemoizeOverloadsTest {
+    private static final String PACKAGE = "dev.cbyrne.betterinject.benchmark.memoize.generated";
+    private static final String TARGET = PACKAGE + ".MemoizedOverloads";
+    private static final String MIXIN = PACKAGE + ".mixin.MemoizedOverloadsMixin";
+    private static final String CONFIG = "betterinject.memoize.overloads.mixins.json";
+
+    private static byte[] target;
+
+    @BeforeAll
+    public static void generate() {
+        target = generateTarget();
+        MixinHarness.addGeneratedResource(resourcePath(TARGET), target);
+        MixinHarness.addGeneratedResource(resourcePath(MIXIN), generateMixin());
+
+        String config = "{\n"
+            + "  \"required\": true,\n"
+            + "  \"minVersion\": \"0.8\",\n"
+            + "  \"package\": \"" + PACKAGE + ".mixin\",\n"
+            + "  \"compatibilityLevel\": \"JAVA_8\",\n"
+            + "  \"mixins\": [\"MemoizedOverloadsMixin\"],\n"
+            + "  \"injectors\": {\n"
+            + "    \"defaultRequire\": 1\n"
+            + "  }\n"
+            + "}\n";
+        MixinHarness.addGeneratedResource(CONFIG, config.getBytes(StandardCharsets.UTF_8));
+        MixinHarness.addConfiguration(CONFIG);
+    }
+
+    @Test
+    public void eachOverloadHasItsOwnCache() throws ReflectiveOperationException {
+        byte[] transformed = MixinHarness.transform(TARGET, target);
+        Class<?> targetClass = new SingleClassLoader(TARGET, transformed).loadClass(TARGET);
+
+        int cacheFields = 0;
+        for (Field field : targetClass.getDeclaredFields()) {
+            if (field.getName().startsWith("betterinject$memo$")) {
+                cacheFields++;
+            }
+        }
+        assertEquals(2, cacheFields);
+
+        Method computeInt = targetClass.getMethod("compute", int.class);
+        Method computeLong = targetClass.getMethod("compute", long.class);
+        Field calls = targetClass.getField("calls");
+
+        assertEquals(6, computeInt.invoke(null, 3));
+        assertEquals(6, computeInt.invoke(null, 3));
+        assertEquals(9, computeLong.invoke(null, 3L));
+        assertEquals(9, computeLong.invoke(null, 3L));
+
+        // Each overload only ran once, and neither returned the other's cached value
+        assertEquals(2, calls.getInt(null));
+    }
+
+    private static byte[] generateTarget() {
+        ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        writer.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC | Opcodes.ACC_SUPER, internalName(TARGET), null, "java/lang/Object", null);
+        writer.visitField(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, "calls", "I", null, null).visitEnd();
+
+        generateCompute(writer, Type.INT_TYPE, 2);
+        generateCompute(writer, Type.LONG_TYPE, 3);
+
+        writer.visitEnd();
+        return writer.toByteArray();
+    }
+
+    /**
+     * public static int compute(T a) { calls++; return (int) a * multiplier; }
+     */
+    private static void generateCompute(ClassWriter writer, Type argumentType, int multiplier) {
+        String descriptor = Type.getMethodDescriptor(Type.INT_TYPE, argumentType);
+        MethodVisitor compute = writer.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, "compute", descriptor, null, null);
+        compute.visitCode();
+        compute.visitFieldInsn(Opcodes.GETSTATIC, internalName(TARGET), "calls", "I");
+        compute.visitInsn(Opcodes.ICONST_1);
+        compute.visitInsn(Opcodes.IADD);
+        compute.visitFieldInsn(Opcodes.PUTSTATIC, internalName(TARGET), "calls", "I");
+        compute.visitVarInsn(argumentType.getOpcode(Opcodes.ILOAD), 0);
+        if (argumentType.equals(Type.LONG_TYPE)) {
+            compute.visitInsn(Opcodes.L2I);
+        }
+        compute.visitIntInsn(Opcodes.BIPUSH, multiplier);
+        compute.visitInsn(Opcodes.IMUL);
+        compute.visitInsn(Opcodes.IRETURN);
+        compute.visitMaxs(0, 0);
+        compute.visitEnd();
+    }
+
+    private static byte[] generateMixin() {
+        ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        writer.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC | Opcodes.ACC_SUPER, internalName(MIXIN), null, "java/lang/Object", null);
+
+        AnnotationVisitor mixin = writer.visitAnnotation(Type.getDescriptor(Mixin.class), false);
+        AnnotationVisitor targets = mixin.visitArray("value");
+        targets.visit(null, Type.getObjectType(internalName(TARGET)));
+        targets.visitEnd();
+        mixin.visit("remap", false);
+        mixin.visitEnd();
+
+        MethodVisitor constructor = writer.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "()V", null, null);
+        constructor.visitCode();
+        constructor.visitVarInsn(Opcodes.ALOAD, 0);
+        constructor.visitMethodInsn(Opcodes.INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false);
+        constructor.visitInsn(Opcodes.RETURN);
+        constructor.visitMaxs(0, 0);
+        constructor.visitEnd();
+
+        MethodVisitor handler = writer.visitMethod(Opcodes.ACC_PRIVATE | Opcodes.ACC_STATIC, "memoize", "()V", null, null);
+        AnnotationVisitor memoize = handler.visitAnnotation(Type.getDescriptor(Memoize.class), true);
+        AnnotationVisitor methods = memoize.visitArray("method");
+        methods.visit(null, "compute(I)I");
+        methods.visit(null, "compute(J)I");
+        methods.visitEnd();
+        AnnotationVisitor ats = memoize.visitArray("at");
+        AnnotationVisitor at = ats.visitAnnotation(null, Type.getDescriptor(At.class));
+        at.visit("value", "RETURN");
+        at.visitEnd();
+        ats.visitEnd();
+        memoize.visit("remap", false);
+        memoize.visitEnd();
+
+        handler.visitCode();
+        handler.visitInsn(Opcodes.RETURN);
+        handler.visitMaxs(0, 0);
+        handler.visitEnd();
+
+        writer.visitEnd();
+        return writer.toByteArray();
+    }
+
+    private static String internalName(String name) {
+        return name.replace('.', '/');
+    }
+
+    private static String resourcePath(String name) {
+        return internalName(name) + ".class";
+    }
+
+    /**
+     * Defines the transformed target, everything else is loaded by the test's class loader.
+     */
+    private static class SingleClassLoader extends ClassLoader {
+        private final String name;
+        private final byte[] bytes;
+
+        private SingleClassLoader(String name, byte[] bytes) {
+            super(MemoizeOverloadsTest.class.getClassLoader());
+            this.name = name;
+            this.bytes = bytes;
+        }
+
+        @Override
+        protected Class<?> findClass(String name) throws ClassNotFoundException {
+            if (!name.equals(this.name)) {
+                throw new ClassNotFoundException(name);
+            }
+
+            return this.defineClass(name, this.bytes, 0, this.bytes.length);
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package dev.cbyrne.betterinject.benchmark.transform;
+
+import dev.cbyrne.betterinject.benchmark.harness.MixinHarness;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Transforms many {@link SyntheticClasses} from many threads at once, as a parallel-capable class loader would, and
+ * checks that every one of them still verifies and runs. Any state shared between injections which is not thread-safe
+ * shows up here as a VerifyError, or as an exception while transforming.
+ */
+public class ConcurrentTransformTest {
+    private static final String PREFIX = "Concurrent";
+    private static final int CLASSES = 400;
+    private static final int THREADS = 8;
+
+    private static final List<byte[]> TARGETS = new ArrayList<>(CLASSES);
+
+    @BeforeAll
+    public static void generate() {
+        List<Integer> indexes = new ArrayList<>(CLASSES);
+        for (int i = 0; i < CLASSES; i++) {
+            byte[] target = SyntheticClasses.generateTarget(PREFIX, i);
+            MixinHarness.addGeneratedResource(resourcePath(SyntheticClasses.targetName(PREFIX, i)), target);
+            MixinHarness.addGeneratedResource(
+                resourcePath(SyntheticClasses.mixinName(PREFIX, i)),
+                SyntheticClasses.generateMixin(PREFIX, i)
+            );
+
+            TARGETS.add(target);
+            indexes.add(i);
+        }
+
+        // Mixin only selects configurations before it transforms its first class
+        String config = "betterinject.synthetic.concurrent.mixins.json";
+        MixinHarness.addGeneratedResource(config, SyntheticClasses.generateConfig(PREFIX, indexes).getBytes(StandardCharsets.UTF_8));
+        MixinHarness.addConfiguration(config);
+    }
+
+    @Test
+    public void transformsManyTargetsFromManyThreads() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<byte[]>> results = new ArrayList<>(CLASSES);
+
+        try {
+            for (int i = 0; i < CLASSES; i++) {
+                String name = SyntheticClasses.targetName(PREFIX, i);
+                byte[] target = TARGETS.get(i);
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return MixinHarness.transform(name, target);
+                }));
+            }
+
+            // Release every thread at once, so that as many transformations as possible overlap
+            start.countDown();
+
+            Map<String, byte[]> transformed = new HashMap<>();
+            for (int i = 0; i < CLASSES; i++) {
+                byte[] bytes = results.get(i).get(1, TimeUnit.MINUTES);
+                assertFalse(Arrays.equals(TARGETS.get(i), bytes), "Synthetic class " + i + " was not transformed");
+                transformed.put(SyntheticClasses.targetName(PREFIX, i), bytes);
+            }
+
+            GeneratedClassLoader classLoader = new GeneratedClassLoader(transformed);
+            for (int i = 0; i < CLASSES; i++) {
+                invokeAll(Class.forName(SyntheticClasses.targetName(PREFIX, i), true, classLoader));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+    }
+
+    /**
+     * Calls every method of a target, so that every handler injected into it runs at least once.
+     */
+    private static void invokeAll(Class<?> targetClass) throws ReflectiveOperationException {
+        Object instance = targetClass.getDeclaredConstructor().newInstance();
+        int invoked = 0;
+
+        for (Method method : targetClass.getDeclaredMethods()) {
+            if (!Modifier.isPublic(method.getModifiers())) {
+                continue;
+            }
+
+            Class<?>[] parameterTypes = method.getParameterTypes();
+            Object[] arguments = new Object[parameterTypes.length];
+            for (int i = 0; i < parameterTypes.length; i++) {
+                arguments[i] = argumentOf(parameterTypes[i]);
+            }
+
+            method.invoke(Modifier.isStatic(method.getModifiers()) ? null : instance, arguments);
+            invoked++;
+        }
+
+        assertEquals(SyntheticClasses.HANDLERS_PER_CLASS, invoked, "Unexpected methods in " + targetClass.getName());
+    }
+
+    private static Object argumentOf(Class<?> type) {
+        if (type == int.class) {
+            return 1;
+        } else if (type == long.class) {
+            return 1L;
+        } else if (type == float.class) {
+            return 1.0F;
+        } else if (type == double.class) {
+            return 1.0D;
+        }
+
+        return "value";
+    }
+
+    private static String resourcePath(String name) {
+        return name.replace('.', '/') + ".class";
+    }
+
+    /**
+     * Defines the transformed synthetic classes, everything else is loaded by the test's class loader.
+     */
+    private static class GeneratedClassLoader extends ClassLoader {
+        private final Map<String, byte[]> classes;
+
+        private GeneratedClassLoader(Map<String, byte[]> classes) {
+            super(ConcurrentTransformTest.class.getClassLoader());
+            this.classes = classes;
+        }
+
+        @Override
+        protected Class<?> findClass(String name) throws ClassNotFoundException {
+            byte[] bytes = this.classes.get(name);
+            if (bytes == null) {
+                throw new ClassNotFoundException(name);
+            }
+
+            return this.defineClass(name, bytes, 0, bytes.length);
+        }
+    }
+}
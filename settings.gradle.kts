@@ -1,2 +1,3 @@
 rootProject.name = "BetterInject"
 
+include("benchmark")
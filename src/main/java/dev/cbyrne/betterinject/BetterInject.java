@@ -1,17 +1,37 @@
 package dev.cbyrne.betterinject;
 
+import dev.cbyrne.betterinject.hooks.HookDenyList;
 import dev.cbyrne.betterinject.injector.InjectInjectionInfo;
+import dev.cbyrne.betterinject.injector.MemoizeInjectionInfo;
+import dev.cbyrne.betterinject.metrics.InjectionMetrics;
+import dev.cbyrne.betterinject.warmup.TargetWarmup;
 import org.spongepowered.asm.mixin.injection.struct.InjectionInfo;
 
+import java.util.concurrent.CompletableFuture;
+
 public class BetterInject {
     private static boolean initialized = false;
 
-    public static void initialize() {
+    public static synchronized void initialize() {
         if (initialized) {
             return;
         }
 
         InjectionInfo.register(InjectInjectionInfo.class);
+        InjectionInfo.register(MemoizeInjectionInfo.class);
+        InjectionMetrics.initialize();
+        HookDenyList.initialize();
         initialized = true;
     }
+
+    /**
+     * Loads the targets of every mixin config in parallel, so that they are transformed before they are needed.
+     * This must be called once Mixin has reached the DEFAULT phase, e.g. from your mod's entrypoint.
+     *
+     * @param classLoader The class loader which applies Mixin to the classes it loads, e.g. the game's class loader
+     * @see TargetWarmup
+     */
+    public static CompletableFuture<Void> warmUp(ClassLoader classLoader) {
+        return TargetWarmup.start(classLoader);
+    }
 }
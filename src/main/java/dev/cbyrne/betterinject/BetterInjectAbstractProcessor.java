@@ -1,5 +1,9 @@
 package dev.cbyrne.betterinject;
 
+import dev.cbyrne.betterinject.annotations.Inject;
+import dev.cbyrne.betterinject.injector.signature.HandlerIndex;
+import dev.cbyrne.betterinject.processor.HandlerValidator;
+import dev.cbyrne.betterinject.processor.TypeDescriptors;
 import org.spongepowered.asm.util.logging.MessageRouter;
 
 import javax.annotation.processing.AbstractProcessor;
@@ -7,11 +11,28 @@ import javax.annotation.processing.ProcessingEnvironment;
 import javax.annotation.processing.RoundEnvironment;
 import javax.annotation.processing.SupportedAnnotationTypes;
 import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ExecutableElement;
 import javax.lang.model.element.TypeElement;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Set;
 
-@SupportedAnnotationTypes({})
+@SupportedAnnotationTypes("dev.cbyrne.betterinject.annotations.Inject")
 public class BetterInjectAbstractProcessor extends AbstractProcessor {
+    private TypeDescriptors descriptors;
+    private HandlerValidator validator;
+
+    /**
+     * The index entries for each handler, by the binary name of their mixin class
+     */
+    private final Map<String, Map<String, String>> indexes = new LinkedHashMap<>();
+
     @Override
     public synchronized void init(ProcessingEnvironment processingEnv) {
         super.init(processingEnv);
@@ -19,13 +40,67 @@ public class BetterInjectAbstractProcessor extends AbstractProcessor {
         // Mumfrey said this is required in the SpongePowered discord a few months ago, so we don't question it
         MessageRouter.setMessager(processingEnv.getMessager());
         BetterInject.initialize();
+
+        this.descriptors = new TypeDescriptors(processingEnv.getElementUtils(), processingEnv.getTypeUtils());
+        this.validator = new HandlerValidator(processingEnv.getElementUtils(), processingEnv.getMessager(), this.descriptors);
     }
 
     @Override
     public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (Element element : roundEnv.getElementsAnnotatedWith(Inject.class)) {
+            if (!(element instanceof ExecutableElement)) {
+                continue;
+            }
+
+            ExecutableElement handler = (ExecutableElement) element;
+            String entry = this.validator.validate(handler);
+            if (entry == null) {
+                continue;
+            }
+
+            TypeElement mixin = (TypeElement) handler.getEnclosingElement();
+            String mixinName = processingEnv.getElementUtils().getBinaryName(mixin).toString();
+
+            this.indexes.computeIfAbsent(mixinName, name -> new LinkedHashMap<>())
+                .put(handler.getSimpleName() + this.descriptors.of(handler), entry);
+        }
+
+        if (roundEnv.processingOver()) {
+            this.writeIndexes();
+        }
+
         return false;
     }
 
+    /**
+     * Writes a {@link HandlerIndex} resource for each mixin, which is loaded by the injector instead of reading the
+     * handler's annotations again.
+     */
+    private void writeIndexes() {
+        for (Map.Entry<String, Map<String, String>> index : this.indexes.entrySet()) {
+            try {
+                FileObject resource = processingEnv.getFiler().createResource(
+                    StandardLocation.CLASS_OUTPUT,
+                    "",
+                    HandlerIndex.resourceName(index.getKey())
+                );
+
+                try (Writer writer = resource.openWriter()) {
+                    for (Map.Entry<String, String> handler : index.getValue().entrySet()) {
+                        writer.write(handler.getKey() + "=" + handler.getValue() + "\n");
+                    }
+                }
+            } catch (IOException e) {
+                processingEnv.getMessager().printMessage(
+                    Diagnostic.Kind.WARNING,
+                    "Failed to write the BetterInject handler index for " + index.getKey() + ": " + e.getMessage()
+                );
+            }
+        }
+
+        this.indexes.clear();
+    }
+
     @Override
     public SourceVersion getSupportedSourceVersion() {
         return SourceVersion.latestSupported();
@@ -28,4 +28,18 @@ public @interface Inject {
     int allow() default -1;
 
     boolean print() default false;
+
+    boolean shareCallbackInfo() default false;
+
+    boolean trampoline() default false;
+
+    boolean toggleable() default false;
+
+    boolean async() default false;
+
+    int sampleRate() default 1;
+
+    boolean enabledByDefault() default true;
+
+    boolean profile() default false;
 }
@@ -15,4 +15,10 @@ public @interface Local {
     boolean print() default false;
 
     String[] names() default {};
+
+    /**
+     * If true, the parameter is a reference to the local (i.e. {@code LocalIntRef} or {@code LocalRef<String>}), and
+     * any value set on it is written back to the local after the handler returns.
+     */
+    boolean mutable() default false;
 }
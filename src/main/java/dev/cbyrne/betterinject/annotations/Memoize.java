@@ -0,0 +1,47 @@
+package dev.cbyrne.betterinject.annotations;
+
+import dev.cbyrne.betterinject.memoize.Eviction;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Slice;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Caches the values returned by a pure target method, keyed on the arguments selected by the handler's @Arg parameters,
+ * or on all of the target's arguments if the handler has no parameters. The handler itself is never called.
+ * <pre>
+ * &#64;Memoize(method = "getHeight", at = &#64;At("RETURN"), maxSize = 4096)
+ * private void myMod$memoizeHeight(@Arg(ordinal = 0) int x, @Arg(ordinal = 1) int z) {
+ * }
+ * </pre>
+ * The cache is shared by every instance of the target class, so if the target is not static, the instance it is called
+ * on (compared with equals) is also part of the key, and stays reachable until its values are evicted.
+ * The value is stored at each RETURN selected by {@link #at()}, and a cached value is returned from the start of the
+ * target, before any other handlers.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Memoize {
+    String[] method();
+
+    At[] at();
+
+    Slice[] slice() default {};
+
+    boolean remap() default true;
+
+    int require() default -1;
+
+    int expect() default 1;
+
+    int allow() default -1;
+
+    boolean print() default false;
+
+    int maxSize() default 1024;
+
+    Eviction eviction() default Eviction.LRU;
+}
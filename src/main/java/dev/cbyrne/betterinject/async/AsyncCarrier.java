@@ -0,0 +1,83 @@
+package dev.cbyrne.betterinject.async;
+
+import java.lang.invoke.MethodHandle;
+import java.util.Arrays;
+
+/**
+ * Holds the arguments captured for an asynchronous handler, until it is called by the {@link AsyncDispatcher}.
+ * <p/>
+ * Carriers are pooled and reused, primitives are stored without boxing them. Booleans, bytes, chars and shorts are
+ * stored as ints.
+ */
+public final class AsyncCarrier {
+    private MethodHandle dispatch;
+    private long[] primitives = new long[0];
+    private Object[] objects = new Object[0];
+
+    AsyncCarrier() {
+    }
+
+    void prepare(MethodHandle dispatch, int primitiveCount, int objectCount) {
+        this.dispatch = dispatch;
+
+        if (this.primitives.length < primitiveCount) {
+            this.primitives = new long[primitiveCount];
+        }
+
+        if (this.objects.length < objectCount) {
+            this.objects = new Object[objectCount];
+        }
+    }
+
+    void dispatch() throws Throwable {
+        this.dispatch.invokeExact(this);
+    }
+
+    /**
+     * Clears the captured objects, so that they can be garbage collected while this is in the pool
+     */
+    void clear() {
+        this.dispatch = null;
+        Arrays.fill(this.objects, null);
+    }
+
+    public void putInt(int index, int value) {
+        this.primitives[index] = value;
+    }
+
+    public void putLong(int index, long value) {
+        this.primitives[index] = value;
+    }
+
+    public void putFloat(int index, float value) {
+        this.primitives[index] = Float.floatToRawIntBits(value);
+    }
+
+    public void putDouble(int index, double value) {
+        this.primitives[index] = Double.doubleToRawLongBits(value);
+    }
+
+    public void putObject(int index, Object value) {
+        this.objects[index] = value;
+    }
+
+    public int getInt(int index) {
+        return (int) this.primitives[index];
+    }
+
+    public long getLong(int index) {
+        return this.primitives[index];
+    }
+
+    public float getFloat(int index) {
+        return Float.intBitsToFloat((int) this.primitives[index]);
+    }
+
+    public double getDouble(int index) {
+        return Double.longBitsToDouble(this.primitives[index]);
+    }
+
+    public Object getObject(int index) {
+        return this.objects[index];
+    }
+}
@@ -0,0 +1,189 @@
+package dev.cbyrne.betterinject.async;
+
+import dev.cbyrne.betterinject.utils.LogUtils;
+
+import java.lang.invoke.MethodHandle;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Calls handlers injected with {@code async = true} away from their target's thread.
+ * <p/>
+ * The target acquires a {@link AsyncCarrier}, stores the handler's arguments in it, and submits it. The carriers are
+ * drained by a single task on the {@link Executor}, which calls each handler in the order they were submitted.
+ * <p/>
+ * At most 1024 carriers (or the value of {@value #CAPACITY_PROPERTY}) can be waiting at once. When they are all in use, the
+ * call is dropped instead of blocking the target, and counted in {@link #getDroppedCount()}. If the executor rejects the
+ * drain (e.g. it has been shut down), the waiting calls are dropped in the same way.
+ */
+public final class AsyncDispatcher {
+    public static final String CAPACITY_PROPERTY = "betterinject.async.capacity";
+    public static final String VIRTUAL_THREADS_PROPERTY = "betterinject.async.virtualThreads";
+
+    private static final int CAPACITY = Integer.getInteger(CAPACITY_PROPERTY, 1024);
+
+    private static final Queue<AsyncCarrier> QUEUE = new ConcurrentLinkedQueue<>();
+    private static final Queue<AsyncCarrier> POOL = new ConcurrentLinkedQueue<>();
+
+    /**
+     * The number of carriers which have been created, this never exceeds {@link #CAPACITY}
+     */
+    private static final AtomicInteger CARRIERS = new AtomicInteger();
+    private static final AtomicBoolean DRAINING = new AtomicBoolean();
+    private static final AtomicBoolean REJECTED = new AtomicBoolean();
+
+    private static final AtomicLong SUBMITTED = new AtomicLong();
+    private static final AtomicLong DROPPED = new AtomicLong();
+    private static final AtomicLong FAILED = new AtomicLong();
+
+    private static volatile Executor executor = null;
+
+    private AsyncDispatcher() {
+    }
+
+    /**
+     * Sets the executor which calls asynchronous handlers, this should be done before any are called.
+     */
+    public static void setExecutor(Executor executor) {
+        AsyncDispatcher.executor = executor;
+    }
+
+    /**
+     * Gets a carrier for a handler's arguments, or null if there are too many waiting calls.
+     *
+     * @param dispatch The method which calls the handler with the carrier's arguments
+     */
+    public static AsyncCarrier acquire(MethodHandle dispatch, int primitiveCount, int objectCount) {
+        AsyncCarrier carrier = POOL.poll();
+        if (carrier == null) {
+            if (CARRIERS.incrementAndGet() > CAPACITY) {
+                CARRIERS.decrementAndGet();
+                DROPPED.incrementAndGet();
+                return null;
+            }
+
+            carrier = new AsyncCarrier();
+        }
+
+        carrier.prepare(dispatch, primitiveCount, objectCount);
+        return carrier;
+    }
+
+    /**
+     * Queues a carrier's handler to be called.
+     */
+    public static void submit(AsyncCarrier carrier) {
+        SUBMITTED.incrementAndGet();
+        QUEUE.offer(carrier);
+        scheduleDrain();
+    }
+
+    public static long getSubmittedCount() {
+        return SUBMITTED.get();
+    }
+
+    public static long getDroppedCount() {
+        return DROPPED.get();
+    }
+
+    /**
+     * The number of handler calls which threw an exception
+     */
+    public static long getFailedCount() {
+        return FAILED.get();
+    }
+
+    public static int getQueuedCount() {
+        return QUEUE.size();
+    }
+
+    private static void scheduleDrain() {
+        if (!DRAINING.compareAndSet(false, true)) {
+            return;
+        }
+
+        try {
+            getExecutor().execute(AsyncDispatcher::drain);
+        } catch (RuntimeException e) {
+            // The target must not see this, and nothing else would drain the queue if we stayed marked as draining
+            if (!REJECTED.getAndSet(true)) {
+                LogUtils.LOGGER.error("The executor rejected the asynchronous handlers, waiting calls will be dropped", e);
+            }
+
+            DRAINING.set(false);
+            discardQueued();
+        }
+    }
+
+    /**
+     * Returns every waiting carrier to the pool without calling its handler, counting each call as dropped.
+     */
+    private static void discardQueued() {
+        AsyncCarrier carrier;
+        while ((carrier = QUEUE.poll()) != null) {
+            DROPPED.incrementAndGet();
+            carrier.clear();
+            POOL.offer(carrier);
+        }
+    }
+
+    private static void drain() {
+        AsyncCarrier carrier;
+        while ((carrier = QUEUE.poll()) != null) {
+            try {
+                carrier.dispatch();
+            } catch (Throwable t) {
+                if (FAILED.getAndIncrement() == 0) {
+                    LogUtils.LOGGER.error("An asynchronous handler threw an exception, further exceptions will only be counted", t);
+                }
+            } finally {
+                carrier.clear();
+                POOL.offer(carrier);
+            }
+        }
+
+        DRAINING.set(false);
+
+        // Something may have been submitted after we stopped polling, but before we stopped draining
+        if (!QUEUE.isEmpty()) {
+            scheduleDrain();
+        }
+    }
+
+    private static Executor getExecutor() {
+        if (executor == null) {
+            synchronized (AsyncDispatcher.class) {
+                if (executor == null) {
+                    executor = createDefaultExecutor();
+                }
+            }
+        }
+
+        return executor;
+    }
+
+    /**
+     * A daemon thread, or a virtual thread per drain if {@value #VIRTUAL_THREADS_PROPERTY} is true and this is JDK 21+.
+     */
+    private static Executor createDefaultExecutor() {
+        if (Boolean.getBoolean(VIRTUAL_THREADS_PROPERTY)) {
+            try {
+                return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            } catch (ReflectiveOperationException e) {
+                LogUtils.LOGGER.warn("Virtual threads are not available, using a platform thread for asynchronous handlers");
+            }
+        }
+
+        return Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "BetterInject Async Dispatcher");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+}
@@ -0,0 +1,62 @@
+package dev.cbyrne.betterinject.callback;
+
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfoReturnable;
+
+/**
+ * A {@link CallbackInfoReturnable} for targets which return a boolean, storing the return value without boxing it.
+ * <p/>
+ * This is used by BetterInject in place of a CallbackInfoReturnable for these targets, so handlers can receive either.
+ * Use {@link #setReturnValue(boolean)} to cancel the target without any allocations.
+ * <p/>
+ * Like a CallbackInfoReturnable, {@link #getReturnValue()} is null until a value is set, and setting it to null makes
+ * the target return false.
+ */
+public class CallbackInfoReturnableBoolean extends CallbackInfoReturnable<Boolean> {
+    private boolean returnValue;
+
+    /**
+     * If there is no return value, or it was set to null
+     */
+    private boolean isNull = true;
+
+    public CallbackInfoReturnableBoolean(String name, boolean cancellable) {
+        super(name, cancellable);
+    }
+
+    public CallbackInfoReturnableBoolean(String name, boolean cancellable, boolean returnValue) {
+        super(name, cancellable);
+        this.returnValue = returnValue;
+        this.isNull = false;
+    }
+
+    /**
+     * Cancels the target, making it return this value.
+     */
+    public void setReturnValue(boolean returnValue) {
+        super.cancel();
+        this.returnValue = returnValue;
+        this.isNull = false;
+    }
+
+    @Override
+    public void setReturnValue(Boolean returnValue) {
+        if (returnValue == null) {
+            super.cancel();
+            this.returnValue = false;
+            this.isNull = true;
+            return;
+        }
+
+        this.setReturnValue(returnValue.booleanValue());
+    }
+
+    @Override
+    public Boolean getReturnValue() {
+        return this.isNull ? null : this.returnValue;
+    }
+
+    @Override
+    public boolean getReturnValueZ() {
+        return this.returnValue;
+    }
+}
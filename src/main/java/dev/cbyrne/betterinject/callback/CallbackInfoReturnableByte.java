@@ -0,0 +1,62 @@
+package dev.cbyrne.betterinject.callback;
+
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfoReturnable;
+
+/**
+ * A {@link CallbackInfoReturnable} for targets which return a byte, storing the return value without boxing it.
+ * <p/>
+ * This is used by BetterInject in place of a CallbackInfoReturnable for these targets, so handlers can receive either.
+ * Use {@link #setReturnValue(byte)} to cancel the target without any allocations.
+ * <p/>
+ * Like a CallbackInfoReturnable, {@link #getReturnValue()} is null until a value is set, and setting it to null makes
+ * the target return 0.
+ */
+public class CallbackInfoReturnableByte extends CallbackInfoReturnable<Byte> {
+    private byte returnValue;
+
+    /**
+     * If there is no return value, or it was set to null
+     */
+    private boolean isNull = true;
+
+    public CallbackInfoReturnableByte(String name, boolean cancellable) {
+        super(name, cancellable);
+    }
+
+    public CallbackInfoReturnableByte(String name, boolean cancellable, byte returnValue) {
+        super(name, cancellable);
+        this.returnValue = returnValue;
+        this.isNull = false;
+    }
+
+    /**
+     * Cancels the target, making it return this value.
+     */
+    public void setReturnValue(byte returnValue) {
+        super.cancel();
+        this.returnValue = returnValue;
+        this.isNull = false;
+    }
+
+    @Override
+    public void setReturnValue(Byte returnValue) {
+        if (returnValue == null) {
+            super.cancel();
+            this.returnValue = (byte) 0;
+            this.isNull = true;
+            return;
+        }
+
+        this.setReturnValue(returnValue.byteValue());
+    }
+
+    @Override
+    public Byte getReturnValue() {
+        return this.isNull ? null : this.returnValue;
+    }
+
+    @Override
+    public byte getReturnValueB() {
+        return this.returnValue;
+    }
+}
@@ -4,7 +4,6 @@ import dev.cbyrne.betterinject.utils.CallbackInfoUtils;
 import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.Type;
 import org.objectweb.asm.tree.*;
-import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
 import org.spongepowered.asm.mixin.injection.struct.Target;
 import org.spongepowered.asm.util.Constants;
 
@@ -18,25 +17,28 @@ public class CallbackInfoHelper {
     private int callbackInfoIndex = -1;
 
     /**
-     * If CallbackInfo is needed for this Target or not.
+     * If the next instruction is a return instruction or not
      */
-    private final boolean isCallbackInfoNeeded;
+    private final boolean nextInsnIsReturn;
 
     /**
-     * If the next instruction is a return instruction or not
+     * If a shared, pre-built CallbackInfo should be used where possible
      */
-    private final boolean nextInsnIsReturn;
+    private final boolean shareCallbackInfo;
 
-    public CallbackInfoHelper(boolean isCallbackInfoNeeded, boolean nextInsnIsReturn) {
-        this.isCallbackInfoNeeded = isCallbackInfoNeeded;
-        this.nextInsnIsReturn = nextInsnIsReturn;
-    }
+    /**
+     * The name of the static field holding the shared CallbackInfo, if one is being used
+     */
+    private String sharedCallbackInfoField = null;
 
     /**
-     * If the CallbackInfo is needed or not
+     * The local index that the target's return value has been stored in, if it has been stored
      */
-    public boolean isCallbackInfoNeeded() {
-        return this.isCallbackInfoNeeded;
+    private int returnValueIndex = -1;
+
+    public CallbackInfoHelper(boolean nextInsnIsReturn, boolean shareCallbackInfo) {
+        this.nextInsnIsReturn = nextInsnIsReturn;
+        this.shareCallbackInfo = shareCallbackInfo;
     }
 
     /**
@@ -45,30 +47,60 @@ public class CallbackInfoHelper {
      * @see #generateCallbackInfo(InsnList, Target, boolean)
      */
     public boolean didGenerateCallbackInfo() {
-        return this.callbackInfoIndex != -1;
+        return this.callbackInfoIndex != -1 || this.sharedCallbackInfoField != null;
+    }
+
+    /**
+     * If the next instruction returns a value, which is on the top of the stack
+     */
+    public boolean hasReturnValue(Target target) {
+        return this.nextInsnIsReturn && !target.returnType.equals(Type.VOID_TYPE);
+    }
+
+    /**
+     * Stores a copy of the return value on the top of the stack in a local, if it has not already been stored.
+     *
+     * <pre>T returnValue = (value on the stack);</pre>
+     *
+     * @return The local index of the return value
+     */
+    public int storeReturnValue(InsnList instructions, Target target) {
+        if (this.returnValueIndex != -1) {
+            return this.returnValueIndex;
+        }
+
+        this.returnValueIndex = LocalSlotPlanner.forTarget(target).returnValueSlot();
+        int dupCode = target.returnType.getSize() == 1 ? Opcodes.DUP : Opcodes.DUP2;
+        instructions.add(new InsnNode(dupCode));
+        instructions.add(new VarInsnNode(target.returnType.getOpcode(Opcodes.ISTORE), this.returnValueIndex));
+
+        return this.returnValueIndex;
     }
 
     /**
      * Generates instructions for instantiating a new CallbackInfo.
      *
      * <pre>CallbackInfo ci = new CallbackInfo("target.method.name", isMethodCancellable);</pre>
+     * <p/>
+     * This only happens once, if the CallbackInfo was already generated for a previous handler, this does nothing.
      */
     public void generateCallbackInfo(InsnList instructions, Target target, boolean isMethodCancellable) {
-        if (!this.isCallbackInfoNeeded() || this.didGenerateCallbackInfo()) {
+        if (this.didGenerateCallbackInfo()) {
             return;
         }
 
-        this.callbackInfoIndex = target.allocateLocal();
-        String callbackInfoClass = CallbackInfo.getCallInfoClassName(target.returnType);
+        if (this.canShareCallbackInfo(target, isMethodCancellable)) {
+            this.sharedCallbackInfoField = SharedCallbackInfo.getOrCreate(target);
+            return;
+        }
+
+        LocalSlotPlanner planner = LocalSlotPlanner.forTarget(target);
+        this.callbackInfoIndex = planner.callbackInfoSlot();
+        String callbackInfoClass = CallbackInfoUtils.callbackInfoClassName(target.returnType);
         String callbackInfoCtorDesc = CallbackInfoUtils.CTOR;
 
-        // We need to store the return type
-        int returnTypeLocal = target.allocateLocal();
-        if (this.nextInsnIsReturn && !target.returnType.equals(Type.VOID_TYPE)) {
-            int dupCode = target.returnType.getSize() == 1 ? Opcodes.DUP : Opcodes.DUP2;
-            instructions.add(new InsnNode(dupCode));
-            instructions.add(new VarInsnNode(target.returnType.getOpcode(Opcodes.ISTORE), returnTypeLocal));
-        }
+        // We need to store the return value, if there is one
+        int returnValueLocal = this.hasReturnValue(target) ? this.storeReturnValue(instructions, target) : -1;
 
         // new CallbackInfo
         instructions.add(new TypeInsnNode(Opcodes.NEW, callbackInfoClass));
@@ -77,9 +109,9 @@ public class CallbackInfoHelper {
         instructions.add(new LdcInsnNode(target.method.name));
         // isCancellable
         instructions.add(new InsnNode(isMethodCancellable ? Opcodes.ICONST_1 : Opcodes.ICONST_0));
-        if (this.nextInsnIsReturn && !target.returnType.equals(Type.VOID_TYPE)) {
+        if (returnValueLocal != -1) {
             // We need to load a local of the target's return type to pass the return type to the CallbackInfoReturnable ctor
-            instructions.add(new VarInsnNode(target.returnType.getOpcode(Opcodes.ILOAD), returnTypeLocal));
+            instructions.add(new VarInsnNode(target.returnType.getOpcode(Opcodes.ILOAD), returnValueLocal));
             callbackInfoCtorDesc = CallbackInfoUtils.constructorDescriptor(target.returnType);
         }
         // () <- new CallbackInfo("{target.method.name}", isCancellable, ...)
@@ -93,22 +125,20 @@ public class CallbackInfoHelper {
             )
         );
 
-        // index: callbackInfo(index)
-        target.addLocalVariable(
-            this.callbackInfoIndex,
-            "callbackInfo" + this.callbackInfoIndex,
-            "L" + callbackInfoClass + ";"
-        );
-
         // Store new CallbackInfo(...) in the allocated index
         instructions.add(new VarInsnNode(Opcodes.ASTORE, this.callbackInfoIndex));
     }
 
     /**
-     * Adds "ALOAD {callbackInfoIndex}" to the instruction list
+     * Adds "ALOAD {callbackInfoIndex}" to the instruction list, or a GETSTATIC if the CallbackInfo is shared
      */
-    public void pushCallbackInfoIfRequired(InsnList instructions) {
-        if (!this.isCallbackInfoNeeded() || !this.didGenerateCallbackInfo()) return;
+    public void pushCallbackInfoIfRequired(InsnList instructions, Target target) {
+        if (!this.didGenerateCallbackInfo()) return;
+
+        if (this.sharedCallbackInfoField != null) {
+            SharedCallbackInfo.push(instructions, target, this.sharedCallbackInfoField);
+            return;
+        }
 
         instructions.add(new VarInsnNode(Opcodes.ALOAD, this.callbackInfoIndex));
     }
@@ -130,10 +160,10 @@ public class CallbackInfoHelper {
      * </pre>
      */
     public void wrapInCancellationCheck(InsnList instructions, Target target) {
-        if (!this.isCallbackInfoNeeded || !this.didGenerateCallbackInfo()) return;
+        if (this.callbackInfoIndex == -1) return;
 
-        // Get the class name (CallbackInfo or CallbackInfoReturnable)
-        String callbackInfoClass = CallbackInfo.getCallInfoClassName(target.returnType);
+        // Get the class name (CallbackInfo, CallbackInfoReturnable or a primitive CallbackInfoReturnable)
+        String callbackInfoClass = CallbackInfoUtils.callbackInfoClassName(target.returnType);
 
         // Load our instance of callback info
         instructions.add(new VarInsnNode(Opcodes.ALOAD, callbackInfoIndex));
@@ -158,26 +188,54 @@ public class CallbackInfoHelper {
             instructions.add(new InsnNode(Opcodes.RETURN));
         } else {
             instructions.add(new VarInsnNode(Opcodes.ALOAD, this.callbackInfoIndex));
+            returnFromCallbackInfo(instructions, target, callbackInfoClass);
+        }
 
-            // CallbackInfoReturnable.getReturnValue{X}()
-            instructions.add(new MethodInsnNode(
-                Opcodes.INVOKEVIRTUAL,
-                callbackInfoClass,
-                CallbackInfoUtils.returnFunctionName(target.returnType),
-                CallbackInfoUtils.returnFunctionDescriptor(target.returnType),
-                false
-            ));
+        instructions.add(ifNotCancelled);
+    }
+
+    /**
+     * Returns the value held by the CallbackInfoReturnable on the top of the stack from the target, without boxing it
+     * if the CallbackInfoReturnable is specialized for the target's return type.
+     *
+     * <pre>return callbackInfo.getReturnValue{X}();</pre>
+     */
+    public static void returnFromCallbackInfo(InsnList instructions, Target target, String callbackInfoClass) {
+        // CallbackInfoReturnable.getReturnValue{X}()
+        instructions.add(new MethodInsnNode(
+            Opcodes.INVOKEVIRTUAL,
+            callbackInfoClass,
+            CallbackInfoUtils.returnFunctionName(target.returnType),
+            CallbackInfoUtils.returnFunctionDescriptor(target.returnType),
+            false
+        ));
+
+        // If the return type is an object, method, etc.
+        if (target.returnType.getSort() >= Type.ARRAY) {
+            // We need to cast the Object to the return type
+            instructions.add(new TypeInsnNode(Opcodes.CHECKCAST, target.returnType.getInternalName()));
+        }
+
+        // return
+        instructions.add(new InsnNode(target.returnType.getOpcode(Opcodes.IRETURN)));
+    }
 
-            // If the return type is an object, method, etc.
-            if (target.returnType.getSort() >= Type.ARRAY) {
-                // We need to cast the Object to the return type
-                instructions.add(new TypeInsnNode(Opcodes.CHECKCAST, target.returnType.getInternalName()));
-            }
+    /**
+     * A shared CallbackInfo can only be used if nothing can observe a difference between it and a fresh instance:
+     * the injection must not be cancellable, and there must be no return value to hand to a CallbackInfoReturnable.
+     * <p/>
+     * Static initializers and interfaces are excluded, as we would need to write to the field outside of its
+     * initializer.
+     */
+    private boolean canShareCallbackInfo(Target target, boolean isMethodCancellable) {
+        if (!this.shareCallbackInfo || isMethodCancellable) {
+            return false;
+        }
 
-            // return
-            instructions.add(new InsnNode(target.returnType.getOpcode(Opcodes.IRETURN)));
+        if (this.nextInsnIsReturn && !target.returnType.equals(Type.VOID_TYPE)) {
+            return false;
         }
 
-        instructions.add(ifNotCancelled);
+        return !target.method.name.equals(Constants.CLINIT) && (target.classNode.access & Opcodes.ACC_INTERFACE) == 0;
     }
 }
@@ -0,0 +1,105 @@
+package dev.cbyrne.betterinject.helpers;
+
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.InsnList;
+import org.objectweb.asm.tree.InsnNode;
+import org.objectweb.asm.tree.LabelNode;
+import org.spongepowered.asm.mixin.injection.struct.InjectionNodes.InjectionNode;
+import org.spongepowered.asm.mixin.injection.struct.Target;
+
+import java.util.List;
+
+/**
+ * The state shared by every BetterInject handler that is injected at the same {@link InjectionNode}.
+ * <p/>
+ * Instead of each handler creating its own CallbackInfo, the handlers are fused into one dispatcher which shares it.
+ * Handlers are called in the order they are injected, which is the order of their mixin's priority. Like Mixin's
+ * {@code @Inject}, each cancellable handler is followed by its own cancellation check, so the handlers after one which
+ * cancels the target are never called.
+ * <pre>
+ * CallbackInfo ci = new CallbackInfo(...);
+ * handlerA(ci);
+ * if (ci.isCancelled()) {
+ *     return;
+ * }
+ * handlerB(ci);
+ * if (ci.isCancelled()) {
+ *     return;
+ * }
+ * // <- handlersEnd
+ * </pre>
+ * Only handlers with the same cancellable and shareCallbackInfo values are fused together, so that a non-cancellable
+ * handler is never able to cancel the target. Handlers with a {@link SiteGuard} are never fused, as the whole site is
+ * skipped when the guard fails.
+ */
+public class CallbackSite {
+    private static final String DECORATION_KEY = "betterinject.callbackSite";
+
+    private final CallbackInfoHelper callbackInfoHelper;
+
+    /**
+     * A marker after the last handler call, any new handlers are inserted before this.
+     */
+    private final LabelNode handlersEnd = new LabelNode();
+
+    private CallbackSite(CallbackInfoHelper callbackInfoHelper) {
+        this.callbackInfoHelper = callbackInfoHelper;
+    }
+
+    /**
+     * Finds the site which has been decorated on to this node, or creates a new one.
+     *
+     * @param guards The guards which decide if the handler is called
+     */
+    public static CallbackSite getOrCreate(
+        Target target,
+        InjectionNode node,
+        boolean isCancellable,
+        boolean shareCallbackInfo,
+        List<SiteGuard> guards
+    ) {
+        String key = DECORATION_KEY + (isCancellable ? ".cancellable" : "") + (shareCallbackInfo ? ".shared" : "");
+        for (SiteGuard guard : guards) {
+            key += "." + guard.getId();
+        }
+
+        if (node.hasDecoration(key)) {
+            return node.getDecoration(key);
+        }
+
+        int opcode = node.getCurrentTarget().getOpcode();
+        CallbackSite site = new CallbackSite(
+            new CallbackInfoHelper(
+                node.getCurrentTarget() instanceof InsnNode && opcode >= Opcodes.IRETURN && opcode < Opcodes.RETURN,
+                shareCallbackInfo
+            )
+        );
+
+        target.insns.insertBefore(node.getCurrentTarget(), site.handlersEnd);
+
+        if (!guards.isEmpty()) {
+            // Everything at this site, including the cancellation checks, is skipped if a guard fails
+            LabelNode siteEnd = new LabelNode();
+            InsnList guardInstructions = new InsnList();
+            for (SiteGuard guard : guards) {
+                guard.jumpIfSkipped(guardInstructions, target, siteEnd);
+            }
+
+            target.insns.insertBefore(site.handlersEnd, guardInstructions);
+            target.insns.insertBefore(node.getCurrentTarget(), siteEnd);
+        }
+        node.decorate(key, site);
+        return site;
+    }
+
+    public CallbackInfoHelper getCallbackInfoHelper() {
+        return this.callbackInfoHelper;
+    }
+
+    /**
+     * Inserts a handler's instructions, including its cancellation check, after all the previous handlers at this site.
+     */
+    public void insertHandler(Target target, InsnList instructions) {
+        target.insns.insertBefore(this.handlersEnd, instructions);
+    }
+}
@@ -0,0 +1,71 @@
+package dev.cbyrne.betterinject.helpers;
+
+import dev.cbyrne.betterinject.hooks.Hooks;
+import org.objectweb.asm.Handle;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.*;
+import org.spongepowered.asm.mixin.injection.struct.Target;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+/**
+ * Generates the check which skips a toggleable handler when it has been disabled through {@link Hooks}.
+ * <pre>
+ * if (invokedynamic enabled()) {
+ *     CallbackInfo ci = new CallbackInfo(...);
+ *     handler(ci);
+ *     ...
+ * }
+ * </pre>
+ */
+public class HookGuard implements SiteGuard {
+    private static final String HOOKS = Type.getInternalName(Hooks.class);
+    private static final Handle BOOTSTRAP = new Handle(
+        Opcodes.H_INVOKESTATIC,
+        HOOKS,
+        "bootstrap",
+        Type.getMethodDescriptor(
+            Type.getType(CallSite.class),
+            Type.getType(MethodHandles.Lookup.class),
+            Type.getType(String.class),
+            Type.getType(MethodType.class),
+            Type.getType(String.class),
+            Type.INT_TYPE
+        ),
+        false
+    );
+
+    private final String id;
+    private final boolean enabledByDefault;
+
+    public HookGuard(String id, boolean enabledByDefault) {
+        this.id = id;
+        this.enabledByDefault = enabledByDefault;
+    }
+
+    @Override
+    public String getId() {
+        return "hook." + this.id;
+    }
+
+    /**
+     * Jumps to the label if the hook is disabled.
+     * <p/>
+     * Class files older than Java 7 can't use invokedynamic, these call {@link Hooks#check(String, boolean)} instead.
+     */
+    @Override
+    public void jumpIfSkipped(InsnList instructions, Target target, LabelNode disabled) {
+        if ((target.classNode.version & 0xFFFF) >= Opcodes.V1_7) {
+            instructions.add(new InvokeDynamicInsnNode("enabled", "()Z", BOOTSTRAP, this.id, this.enabledByDefault ? 1 : 0));
+        } else {
+            instructions.add(new LdcInsnNode(this.id));
+            instructions.add(new InsnNode(this.enabledByDefault ? Opcodes.ICONST_1 : Opcodes.ICONST_0));
+            instructions.add(new MethodInsnNode(Opcodes.INVOKESTATIC, HOOKS, "check", "(Ljava/lang/String;Z)Z", false));
+        }
+
+        instructions.add(new JumpInsnNode(Opcodes.IFEQ, disabled));
+    }
+}
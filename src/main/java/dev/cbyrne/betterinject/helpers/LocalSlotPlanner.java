@@ -0,0 +1,145 @@
+package dev.cbyrne.betterinject.helpers;
+
+import dev.cbyrne.betterinject.utils.CallbackInfoUtils;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.MethodNode;
+import org.spongepowered.asm.mixin.injection.struct.Target;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Plans the local variable slots used by BetterInject in a {@link Target}.
+ * <p/>
+ * The locals we allocate (the CallbackInfo, the stored return value, and the references for mutable locals) are only live between being stored and the
+ * cancellation check, which is straight-line code inserted before a single injection node. This means that they are
+ * always dead by the time another node's instructions run, so one slot of each kind can be reused for every node in the
+ * target, instead of growing the frame each time.
+ */
+public class LocalSlotPlanner {
+    /**
+     * The planners for each target method. Weak, as we don't want to keep target classes alive after they are written.
+     * Synchronized, as classes can be transformed concurrently by parallel-capable class loaders.
+     */
+    private static final Map<MethodNode, LocalSlotPlanner> PLANNERS = Collections.synchronizedMap(new WeakHashMap<>());
+
+    private final Target target;
+    private int callbackInfoSlot = -1;
+    private int returnValueSlot = -1;
+    private int localRefPoolSlot = -1;
+    private int profileStartSlot = -1;
+    private final List<Integer> localRefSlots = new ArrayList<>();
+
+    /**
+     * How many slots we have allocated, and how many would have been allocated without reusing them
+     */
+    private int allocatedSlots = 0;
+    private int requestedSlots = 0;
+
+    private LocalSlotPlanner(Target target) {
+        this.target = target;
+    }
+
+    public static LocalSlotPlanner forTarget(Target target) {
+        synchronized (PLANNERS) {
+            LocalSlotPlanner planner = PLANNERS.get(target.method);
+            if (planner == null || planner.target != target) {
+                planner = new LocalSlotPlanner(target);
+                PLANNERS.put(target.method, planner);
+            }
+
+            return planner;
+        }
+    }
+
+    /**
+     * The slot to store the CallbackInfo in, its entry in the LocalVariableTable is only added once.
+     */
+    public int callbackInfoSlot() {
+        this.requestedSlots++;
+
+        if (this.callbackInfoSlot == -1) {
+            this.callbackInfoSlot = this.allocate(1);
+
+            // index: callbackInfo(index)
+            this.target.addLocalVariable(
+                this.callbackInfoSlot,
+                "callbackInfo" + this.callbackInfoSlot,
+                "L" + CallbackInfoUtils.callbackInfoClassName(this.target.returnType) + ";"
+            );
+        }
+
+        return this.callbackInfoSlot;
+    }
+
+    /**
+     * The slot to store the target's return value in, this takes two slots for longs and doubles.
+     */
+    public int returnValueSlot() {
+        if (this.target.returnType.equals(Type.VOID_TYPE)) {
+            throw new IllegalStateException("Target " + this.target.method.name + " does not have a return value");
+        }
+
+        this.requestedSlots += this.target.returnType.getSize();
+
+        if (this.returnValueSlot == -1) {
+            this.returnValueSlot = this.allocate(this.target.returnType.getSize());
+        }
+
+        return this.returnValueSlot;
+    }
+
+    /**
+     * The slot to store the start time of a profiled handler call in, this takes two slots.
+     */
+    public int profileStartSlot() {
+        this.requestedSlots += 2;
+
+        if (this.profileStartSlot == -1) {
+            this.profileStartSlot = this.allocate(2);
+        }
+
+        return this.profileStartSlot;
+    }
+
+    /**
+     * The slot to store the {@link dev.cbyrne.betterinject.locals.LocalRefPool} in, for handlers with mutable locals.
+     */
+    public int localRefPoolSlot() {
+        this.requestedSlots++;
+
+        if (this.localRefPoolSlot == -1) {
+            this.localRefPoolSlot = this.allocate(1);
+        }
+
+        return this.localRefPoolSlot;
+    }
+
+    /**
+     * The slot to store the reference for a handler's nth mutable local in.
+     */
+    public int localRefSlot(int index) {
+        this.requestedSlots++;
+
+        while (this.localRefSlots.size() <= index) {
+            this.localRefSlots.add(this.allocate(1));
+        }
+
+        return this.localRefSlots.get(index);
+    }
+
+    /**
+     * The number of slots that have been saved by reusing slots in this target.
+     */
+    public int getSavedSlots() {
+        return this.requestedSlots - this.allocatedSlots;
+    }
+
+    private int allocate(int size) {
+        this.allocatedSlots += size;
+        return size == 1 ? this.target.allocateLocal() : this.target.allocateLocals(size);
+    }
+}
@@ -0,0 +1,146 @@
+package dev.cbyrne.betterinject.helpers;
+
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.IincInsnNode;
+import org.objectweb.asm.tree.InsnList;
+import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.VarInsnNode;
+import org.spongepowered.asm.mixin.injection.modify.LocalVariableDiscriminator.Context;
+import org.spongepowered.asm.mixin.injection.struct.InjectionInfo;
+import org.spongepowered.asm.mixin.injection.struct.Target;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * A cache of the {@link Context}s used to resolve @Arg and @Local parameters in a {@link Target}.
+ * <p/>
+ * Creating a Context calculates the locals which are available at an instruction, which is expensive. This is shared
+ * between every parameter, injection node and handler that targets the same method.
+ * <p/>
+ * The cache is cleared if the target's instructions or locals are changed by anything other than BetterInject. This
+ * includes instructions which are replaced without changing the number of instructions, e.g. by a @Redirect.
+ */
+public class LocalsIndex {
+    /**
+     * The index for each target method. Weak, as we don't want to keep target classes alive after they are written.
+     * Synchronized, as classes can be transformed concurrently by parallel-capable class loaders.
+     */
+    private static final Map<MethodNode, LocalsIndex> INDEXES = Collections.synchronizedMap(new WeakHashMap<>());
+
+    private final Target target;
+    private final Map<AbstractInsnNode, Map<String, Context>> contexts = new HashMap<>();
+
+    /**
+     * The state of the target when the cache was last known to be valid. The instructions are compared by identity, and
+     * the local each one uses, if any, as other injectors may replace or change instructions in place.
+     */
+    private AbstractInsnNode[] instructions;
+    private int[] instructionLocals;
+    private int maxLocals;
+    private int localVariableCount;
+
+    private LocalsIndex(Target target) {
+        this.target = target;
+        this.acknowledgeChanges();
+    }
+
+    public static LocalsIndex forTarget(Target target) {
+        synchronized (INDEXES) {
+            LocalsIndex index = INDEXES.get(target.method);
+            if (index == null || index.target != target) {
+                index = new LocalsIndex(target);
+                INDEXES.put(target.method, index);
+            }
+
+            return index;
+        }
+    }
+
+    /**
+     * Gets the context for finding a local of the desired type at an instruction, creating it if it is not cached.
+     */
+    public Context getContext(InjectionInfo info, Type desiredType, boolean argumentsOnly, AbstractInsnNode node) {
+        this.clearIfChanged();
+
+        Map<String, Context> contextsAtNode = this.contexts.get(node);
+        if (contextsAtNode == null) {
+            contextsAtNode = new HashMap<>();
+            this.contexts.put(node, contextsAtNode);
+        }
+
+        String key = desiredType.getDescriptor() + (argumentsOnly ? ":args" : ":locals");
+        Context context = contextsAtNode.get(key);
+        if (context == null) {
+            context = new Context(info, desiredType, argumentsOnly, this.target, node);
+            contextsAtNode.put(key, context);
+        }
+
+        return context;
+    }
+
+    /**
+     * Clears the cached contexts if the target has been changed since they were created.
+     */
+    public void clearIfChanged() {
+        if (this.hasChanged()) {
+            this.contexts.clear();
+            this.acknowledgeChanges();
+        }
+    }
+
+    /**
+     * Marks the target's current state as valid for the cached contexts.
+     * <p/>
+     * This is called after BetterInject inserts instructions. These only store to the slots handed out by
+     * {@link LocalSlotPlanner}, which are past the target's own locals, so the cached contexts are still correct.
+     * {@link #clearIfChanged()} must be called before inserting, so that changes from anything else are not missed.
+     */
+    public void acknowledgeChanges() {
+        this.instructions = this.target.insns.toArray();
+        this.instructionLocals = new int[this.instructions.length];
+        for (int i = 0; i < this.instructions.length; i++) {
+            this.instructionLocals[i] = localOf(this.instructions[i]);
+        }
+
+        this.maxLocals = this.target.method.maxLocals;
+        this.localVariableCount = this.target.method.localVariables == null ? 0 : this.target.method.localVariables.size();
+    }
+
+    private boolean hasChanged() {
+        int localVariableCount = this.target.method.localVariables == null ? 0 : this.target.method.localVariables.size();
+        return this.maxLocals != this.target.method.maxLocals
+            || this.localVariableCount != localVariableCount
+            || this.haveInstructionsChanged(this.target.insns);
+    }
+
+    private boolean haveInstructionsChanged(InsnList insns) {
+        if (insns.size() != this.instructions.length) {
+            return true;
+        }
+
+        int i = 0;
+        for (AbstractInsnNode insn = insns.getFirst(); insn != null; insn = insn.getNext(), i++) {
+            if (insn != this.instructions[i] || localOf(insn) != this.instructionLocals[i]) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private static int localOf(AbstractInsnNode insn) {
+        if (insn instanceof VarInsnNode) {
+            return ((VarInsnNode) insn).var;
+        }
+
+        if (insn instanceof IincInsnNode) {
+            return ((IincInsnNode) insn).var;
+        }
+
+        return -1;
+    }
+}
@@ -0,0 +1,140 @@
+package dev.cbyrne.betterinject.helpers;
+
+import dev.cbyrne.betterinject.memoize.Eviction;
+import dev.cbyrne.betterinject.memoize.MemoCache;
+import dev.cbyrne.betterinject.utils.BytecodeUtils;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.*;
+import org.spongepowered.asm.mixin.injection.struct.Target;
+import org.spongepowered.asm.util.Constants;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * The state of a @Memoize handler in one target: the synthetic static field holding its {@link MemoCache}, and the
+ * local which the key is stored in at the start of the target, so that it can be used at every RETURN.
+ * <pre>
+ * private static final synthetic MemoCache betterinject$memo$handler$method$0 = MemoCache.create(1024, "LRU");
+ * </pre>
+ * The field names are numbered, as one handler can memoize several overloads of a method.
+ */
+public class Memoization {
+    private static final String FIELD_PREFIX = "betterinject$memo$";
+    private static final String CACHE_DESCRIPTOR = Type.getDescriptor(MemoCache.class);
+
+    /**
+     * The memoizations in each target method, by their handler's name.
+     * Weak, as we don't want to keep target classes alive after they are written.
+     * Synchronized, as classes can be transformed concurrently by parallel-capable class loaders.
+     */
+    private static final Map<MethodNode, Map<String, Memoization>> MEMOIZATIONS = Collections.synchronizedMap(new WeakHashMap<>());
+
+    private final Target target;
+    private final String cacheField;
+    private final Type keyType;
+    private final int keySlot;
+
+    private Memoization(Target target, String cacheField, Type keyType, int keySlot) {
+        this.target = target;
+        this.cacheField = cacheField;
+        this.keyType = keyType;
+        this.keySlot = keySlot;
+    }
+
+    /**
+     * The cache is a static field initialized in the static initializer, so interfaces are excluded. Constructors can't
+     * return early, and there must be a value to cache.
+     */
+    public static boolean isSupported(Target target) {
+        return (target.classNode.access & Opcodes.ACC_INTERFACE) == 0
+            && !target.method.name.equals(Constants.CTOR)
+            && !target.returnType.equals(Type.VOID_TYPE);
+    }
+
+    /**
+     * @return The memoization created for this handler in the target, or null if it has not been created yet
+     */
+    public static Memoization get(Target target, MethodNode handler) {
+        synchronized (MEMOIZATIONS) {
+            Map<String, Memoization> memoizations = MEMOIZATIONS.get(target.method);
+            Memoization memoization = memoizations != null ? memoizations.get(handler.name) : null;
+            return memoization != null && memoization.target == target ? memoization : null;
+        }
+    }
+
+    /**
+     * Creates the cache field and allocates the key's local.
+     *
+     * @param keyType Either long, or Object
+     */
+    public static Memoization create(Target target, MethodNode handler, Type keyType, int maxSize, Eviction eviction) {
+        String prefix = FIELD_PREFIX + handler.name + "$" + SharedCallbackInfo.sanitize(target.method.name) + "$";
+
+        int index = 0;
+        for (FieldNode field : target.classNode.fields) {
+            if (field.name.startsWith(prefix)) {
+                index++;
+            }
+        }
+
+        String name = prefix + index;
+        target.classNode.fields.add(new FieldNode(
+            Opcodes.ACC_PRIVATE | Opcodes.ACC_STATIC | Opcodes.ACC_FINAL | Opcodes.ACC_SYNTHETIC,
+            name,
+            CACHE_DESCRIPTOR,
+            null,
+            null
+        ));
+
+        InsnList instructions = new InsnList();
+        // MemoCache.create(maxSize, "eviction")
+        instructions.add(BytecodeUtils.pushInt(maxSize));
+        instructions.add(new LdcInsnNode(eviction.name()));
+        instructions.add(new MethodInsnNode(
+            Opcodes.INVOKESTATIC,
+            Type.getInternalName(MemoCache.class),
+            "create",
+            "(ILjava/lang/String;)" + CACHE_DESCRIPTOR,
+            false
+        ));
+        instructions.add(new FieldInsnNode(Opcodes.PUTSTATIC, target.classNode.name, name, CACHE_DESCRIPTOR));
+
+        MethodNode clinit = SharedCallbackInfo.getOrCreateStaticInitializer(target.classNode);
+        clinit.instructions.insert(instructions);
+        clinit.maxStack = Math.max(clinit.maxStack, 2);
+
+        int keySlot = keyType.getSize() == 1 ? target.allocateLocal() : target.allocateLocals(keyType.getSize());
+        Memoization memoization = new Memoization(target, name, keyType, keySlot);
+
+        synchronized (MEMOIZATIONS) {
+            Map<String, Memoization> memoizations = MEMOIZATIONS.get(target.method);
+            if (memoizations == null) {
+                memoizations = new HashMap<>();
+                MEMOIZATIONS.put(target.method, memoizations);
+            }
+
+            memoizations.put(handler.name, memoization);
+        }
+
+        return memoization;
+    }
+
+    /**
+     * Adds "GETSTATIC {cacheField}" to the instruction list
+     */
+    public void pushCache(InsnList instructions) {
+        instructions.add(new FieldInsnNode(Opcodes.GETSTATIC, this.target.classNode.name, this.cacheField, CACHE_DESCRIPTOR));
+    }
+
+    public Type getKeyType() {
+        return this.keyType;
+    }
+
+    public int getKeySlot() {
+        return this.keySlot;
+    }
+}
@@ -0,0 +1,163 @@
+package dev.cbyrne.betterinject.helpers;
+
+import dev.cbyrne.betterinject.locals.*;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.*;
+import org.spongepowered.asm.mixin.injection.struct.Target;
+
+import java.util.List;
+
+/**
+ * Generates the instructions for @Local parameters with {@code mutable = true}, which take a reference to the local from
+ * the {@link LocalRefPool}, and write its value back after the handler returns.
+ * <pre>
+ * LocalRefPool pool = LocalRefPool.get();
+ * try {
+ *     handler(ref = pool.acquireInt(local));
+ * } catch (Throwable t) {
+ *     pool.releaseInt();
+ *     throw t;
+ * }
+ * local = ref.get();
+ * pool.releaseInt();
+ * </pre>
+ */
+public class MutableLocals {
+    private static final String POOL = Type.getInternalName(LocalRefPool.class);
+    private static final Type OBJECT_TYPE = Type.getType(Object.class);
+
+    /**
+     * The type of local variable which a reference holds, or null if the type is not a reference.
+     * <p/>
+     * {@link LocalRef} can hold any object, so the caller needs to find its type argument.
+     */
+    public static Type valueType(Type refType) {
+        String name = refType.getInternalName();
+        if (name.equals(Type.getInternalName(LocalIntRef.class))) return Type.INT_TYPE;
+        if (name.equals(Type.getInternalName(LocalLongRef.class))) return Type.LONG_TYPE;
+        if (name.equals(Type.getInternalName(LocalFloatRef.class))) return Type.FLOAT_TYPE;
+        if (name.equals(Type.getInternalName(LocalDoubleRef.class))) return Type.DOUBLE_TYPE;
+        if (name.equals(Type.getInternalName(LocalBooleanRef.class))) return Type.BOOLEAN_TYPE;
+        if (name.equals(Type.getInternalName(LocalRef.class))) return OBJECT_TYPE;
+        return null;
+    }
+
+    /**
+     * LocalRefPool pool = LocalRefPool.get();
+     */
+    public static void loadPool(InsnList instructions, int poolSlot) {
+        instructions.add(new MethodInsnNode(Opcodes.INVOKESTATIC, POOL, "get", "()L" + POOL + ";", false));
+        instructions.add(new VarInsnNode(Opcodes.ASTORE, poolSlot));
+    }
+
+    /**
+     * Pushes a reference holding the local's value, which is also stored in refSlot.
+     */
+    public static void acquire(InsnList instructions, Type localType, int local, int poolSlot, int refSlot) {
+        Type storedType = storedType(localType);
+        instructions.add(new VarInsnNode(Opcodes.ALOAD, poolSlot));
+        instructions.add(new VarInsnNode(localType.getOpcode(Opcodes.ILOAD), local));
+        instructions.add(new MethodInsnNode(
+            Opcodes.INVOKEVIRTUAL,
+            POOL,
+            "acquire" + kind(localType),
+            Type.getMethodDescriptor(refType(localType), storedType),
+            false
+        ));
+        instructions.add(new InsnNode(Opcodes.DUP));
+        instructions.add(new VarInsnNode(Opcodes.ASTORE, refSlot));
+    }
+
+    /**
+     * Stores the reference's value back in the local, and returns the reference to the pool.
+     */
+    public static void writeBackAndRelease(InsnList instructions, Type localType, int local, int poolSlot, int refSlot) {
+        Type storedType = storedType(localType);
+        instructions.add(new VarInsnNode(Opcodes.ALOAD, refSlot));
+        instructions.add(new MethodInsnNode(
+            Opcodes.INVOKEVIRTUAL,
+            refType(localType).getInternalName(),
+            "get",
+            Type.getMethodDescriptor(storedType),
+            false
+        ));
+
+        if (storedType == OBJECT_TYPE && !localType.equals(OBJECT_TYPE)) {
+            instructions.add(new TypeInsnNode(Opcodes.CHECKCAST, localType.getInternalName()));
+        }
+
+        instructions.add(new VarInsnNode(localType.getOpcode(Opcodes.ISTORE), local));
+        instructions.add(new VarInsnNode(Opcodes.ALOAD, poolSlot));
+        instructions.add(new MethodInsnNode(Opcodes.INVOKEVIRTUAL, POOL, "release" + kind(localType), "()V", false));
+    }
+
+    /**
+     * Returns the references to the pool if the handler call between start and end throws, then rethrows. Without this,
+     * every exception would leave the pool one reference deeper.
+     *
+     * @param localTypes The types of the handler's mutable locals, in the order they should be released
+     */
+    public static void releaseOnThrow(
+        InsnList instructions,
+        Target target,
+        LabelNode start,
+        LabelNode end,
+        List<Type> localTypes,
+        int poolSlot
+    ) {
+        LabelNode handler = new LabelNode();
+        LabelNode after = new LabelNode();
+        instructions.add(new JumpInsnNode(Opcodes.GOTO, after));
+
+        // catch (Throwable t) { pool.release{X}(); ... throw t; }
+        instructions.add(handler);
+        for (Type localType : localTypes) {
+            instructions.add(new VarInsnNode(Opcodes.ALOAD, poolSlot));
+            instructions.add(new MethodInsnNode(Opcodes.INVOKEVIRTUAL, POOL, "release" + kind(localType), "()V", false));
+        }
+        instructions.add(new InsnNode(Opcodes.ATHROW));
+        instructions.add(after);
+
+        // First, so that it is used before any try block in the target which also covers the handler call
+        target.method.tryCatchBlocks.add(0, new TryCatchBlockNode(start, end, handler, null));
+    }
+
+    private static Type storedType(Type localType) {
+        return localType.getSort() >= Type.ARRAY ? OBJECT_TYPE : localType;
+    }
+
+    private static Type refType(Type localType) {
+        switch (localType.getSort()) {
+            case Type.INT:
+                return Type.getType(LocalIntRef.class);
+            case Type.LONG:
+                return Type.getType(LocalLongRef.class);
+            case Type.FLOAT:
+                return Type.getType(LocalFloatRef.class);
+            case Type.DOUBLE:
+                return Type.getType(LocalDoubleRef.class);
+            case Type.BOOLEAN:
+                return Type.getType(LocalBooleanRef.class);
+            default:
+                return Type.getType(LocalRef.class);
+        }
+    }
+
+    private static String kind(Type localType) {
+        switch (localType.getSort()) {
+            case Type.INT:
+                return "Int";
+            case Type.LONG:
+                return "Long";
+            case Type.FLOAT:
+                return "Float";
+            case Type.DOUBLE:
+                return "Double";
+            case Type.BOOLEAN:
+                return "Boolean";
+            default:
+                return "Object";
+        }
+    }
+}
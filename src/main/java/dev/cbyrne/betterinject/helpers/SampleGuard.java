@@ -0,0 +1,86 @@
+package dev.cbyrne.betterinject.helpers;
+
+import dev.cbyrne.betterinject.utils.BytecodeUtils;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.*;
+import org.spongepowered.asm.mixin.injection.struct.Target;
+
+/**
+ * Only calls a handler injected with {@code sampleRate = N} on every Nth call, using a counter in a synthetic static
+ * field on the target class.
+ * <pre>
+ * if (++betterinject$sample$handler$method$0 % N == 0) {
+ *     handler(...);
+ * }
+ * </pre>
+ * The counter is not atomic, as a few lost increments under contention only make the sample slightly less regular. Each
+ * injection node has its own counter.
+ */
+public class SampleGuard implements SiteGuard {
+    private static final String FIELD_PREFIX = "betterinject$sample$";
+
+    private final String handlerName;
+    private final int sampleRate;
+
+    public SampleGuard(String handlerName, int sampleRate) {
+        this.handlerName = handlerName;
+        this.sampleRate = sampleRate;
+    }
+
+    /**
+     * Interfaces can only have final static fields, so they can't hold the counter.
+     */
+    public static boolean isSupported(Target target) {
+        return (target.classNode.access & Opcodes.ACC_INTERFACE) == 0;
+    }
+
+    @Override
+    public String getId() {
+        return "sample." + this.handlerName;
+    }
+
+    @Override
+    public void jumpIfSkipped(InsnList instructions, Target target, LabelNode skipped) {
+        String field = this.createCounter(target);
+
+        // ++counter
+        instructions.add(new FieldInsnNode(Opcodes.GETSTATIC, target.classNode.name, field, "I"));
+        instructions.add(new InsnNode(Opcodes.ICONST_1));
+        instructions.add(new InsnNode(Opcodes.IADD));
+        instructions.add(new InsnNode(Opcodes.DUP));
+        instructions.add(new FieldInsnNode(Opcodes.PUTSTATIC, target.classNode.name, field, "I"));
+
+        // % N, or & (N - 1) if N is a power of two
+        if (Integer.bitCount(this.sampleRate) == 1) {
+            instructions.add(BytecodeUtils.pushInt(this.sampleRate - 1));
+            instructions.add(new InsnNode(Opcodes.IAND));
+        } else {
+            instructions.add(BytecodeUtils.pushInt(this.sampleRate));
+            instructions.add(new InsnNode(Opcodes.IREM));
+        }
+
+        instructions.add(new JumpInsnNode(Opcodes.IFNE, skipped));
+    }
+
+    private String createCounter(Target target) {
+        String prefix = FIELD_PREFIX + this.handlerName + "$" + SharedCallbackInfo.sanitize(target.method.name) + "$";
+
+        int index = 0;
+        for (FieldNode field : target.classNode.fields) {
+            if (field.name.startsWith(prefix)) {
+                index++;
+            }
+        }
+
+        String name = prefix + index;
+        target.classNode.fields.add(new FieldNode(
+            Opcodes.ACC_PRIVATE | Opcodes.ACC_STATIC | Opcodes.ACC_SYNTHETIC,
+            name,
+            "I",
+            null,
+            null
+        ));
+
+        return name;
+    }
+}
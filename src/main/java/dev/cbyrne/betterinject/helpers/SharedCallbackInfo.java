@@ -0,0 +1,94 @@
+package dev.cbyrne.betterinject.helpers;
+
+import dev.cbyrne.betterinject.utils.CallbackInfoUtils;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.*;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+import org.spongepowered.asm.mixin.injection.struct.Target;
+import org.spongepowered.asm.util.Constants;
+
+/**
+ * Manages the synthetic static fields which hold pre-built, non-cancellable CallbackInfo instances.
+ * <p/>
+ * A non-cancellable CallbackInfo is effectively immutable: {@link CallbackInfo#cancel()} throws, and
+ * {@link CallbackInfo#isCancelled()} is always false. This means one instance can be shared between every call to the
+ * target, instead of allocating a new one each time.
+ */
+public class SharedCallbackInfo {
+    private static final String FIELD_PREFIX = "betterinject$callbackInfo$";
+
+    /**
+     * Finds or creates the field holding the shared CallbackInfo for this target, and returns its name.
+     * <p/>
+     * The field is initialized at the start of the static initializer:
+     * <pre>private static final synthetic CallbackInfo betterinject$callbackInfo$method = new CallbackInfo("method", false);</pre>
+     */
+    public static String getOrCreate(Target target) {
+        String callbackInfoClass = CallbackInfoUtils.callbackInfoClassName(target.returnType);
+        String descriptor = "L" + callbackInfoClass + ";";
+        String name = FIELD_PREFIX + sanitize(target.method.name);
+
+        for (FieldNode field : target.classNode.fields) {
+            if (field.name.equals(name) && field.desc.equals(descriptor)) {
+                return name;
+            }
+        }
+
+        target.classNode.fields.add(new FieldNode(
+            Opcodes.ACC_PRIVATE | Opcodes.ACC_STATIC | Opcodes.ACC_FINAL | Opcodes.ACC_SYNTHETIC,
+            name,
+            descriptor,
+            null,
+            null
+        ));
+
+        InsnList instructions = new InsnList();
+        // new CallbackInfo("{target.method.name}", false)
+        instructions.add(new TypeInsnNode(Opcodes.NEW, callbackInfoClass));
+        instructions.add(new InsnNode(Opcodes.DUP));
+        instructions.add(new LdcInsnNode(target.method.name));
+        instructions.add(new InsnNode(Opcodes.ICONST_0));
+        instructions.add(new MethodInsnNode(
+            Opcodes.INVOKESPECIAL,
+            callbackInfoClass,
+            Constants.CTOR,
+            CallbackInfoUtils.CTOR,
+            false
+        ));
+        instructions.add(new FieldInsnNode(Opcodes.PUTSTATIC, target.classNode.name, name, descriptor));
+
+        MethodNode clinit = getOrCreateStaticInitializer(target.classNode);
+        clinit.instructions.insert(instructions);
+        clinit.maxStack = Math.max(clinit.maxStack, 4);
+
+        return name;
+    }
+
+    /**
+     * Adds "GETSTATIC {field}" to the instruction list
+     */
+    public static void push(InsnList instructions, Target target, String field) {
+        String descriptor = "L" + CallbackInfoUtils.callbackInfoClassName(target.returnType) + ";";
+        instructions.add(new FieldInsnNode(Opcodes.GETSTATIC, target.classNode.name, field, descriptor));
+    }
+
+    static MethodNode getOrCreateStaticInitializer(ClassNode classNode) {
+        for (MethodNode method : classNode.methods) {
+            if (method.name.equals(Constants.CLINIT)) {
+                return method;
+            }
+        }
+
+        MethodNode clinit = new MethodNode(Opcodes.ACC_STATIC, Constants.CLINIT, "()V", null, null);
+        clinit.instructions.add(new InsnNode(Opcodes.RETURN));
+        classNode.methods.add(clinit);
+        return clinit;
+    }
+
+    /**
+     * Constructors can be targeted, but '<' and '>' are not something we want in a field or method name.
+     */
+    static String sanitize(String methodName) {
+        return methodName.replace('<', '_').replace('>', '_');
+    }
+}
@@ -0,0 +1,22 @@
+package dev.cbyrne.betterinject.helpers;
+
+import org.objectweb.asm.tree.InsnList;
+import org.objectweb.asm.tree.LabelNode;
+import org.spongepowered.asm.mixin.injection.struct.Target;
+
+/**
+ * A check which decides whether a handler is called, before its CallbackInfo is created or its arguments are loaded.
+ * <p/>
+ * Handlers with a guard are never fused with others in a {@link CallbackSite}, as the whole site is skipped.
+ */
+public interface SiteGuard {
+    /**
+     * Identifies this guard in a {@link CallbackSite}'s decoration key
+     */
+    String getId();
+
+    /**
+     * Adds instructions which jump to the label if the handler should not be called.
+     */
+    void jumpIfSkipped(InsnList instructions, Target target, LabelNode skipped);
+}
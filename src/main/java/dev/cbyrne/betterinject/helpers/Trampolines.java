@@ -0,0 +1,77 @@
+package dev.cbyrne.betterinject.helpers;
+
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.MethodNode;
+import org.spongepowered.asm.mixin.injection.struct.Target;
+
+/**
+ * Manages the synthetic static methods which hold a handler's prologue when it is injected with {@code trampoline = true}.
+ * <p/>
+ * Instead of inserting the CallbackInfo, argument loads, handler call and cancellation check into the target, the target
+ * only passes the values the handler needs to the trampoline, and branches on its result. This keeps small targets, such
+ * as getters, under the JIT's inlining limits.
+ * <pre>
+ * public void tick() {
+ *     if (betterinject$trampoline$onTick$tick(this)) {
+ *         return;
+ *     }
+ *     ...
+ * }
+ *
+ * private static synthetic boolean betterinject$trampoline$onTick$tick(Target self) {
+ *     CallbackInfo ci = new CallbackInfo("tick", true);
+ *     self.onTick(ci);
+ *     return ci.isCancelled();
+ * }
+ * </pre>
+ */
+public class Trampolines {
+    private static final String METHOD_PREFIX = "betterinject$trampoline$";
+    private static final String ASYNC_METHOD_PREFIX = "betterinject$async$";
+
+    /**
+     * Trampolines are private static methods, which can't be added to interfaces in Java 8 class files.
+     */
+    public static boolean isSupported(Target target) {
+        return (target.classNode.access & Opcodes.ACC_INTERFACE) == 0;
+    }
+
+    /**
+     * Finds the trampoline for this handler and target with this descriptor, or creates an empty one.
+     * <p/>
+     * The name and descriptor identify everything that the trampoline's body depends on, so an existing trampoline can be
+     * reused by every injection node in the target. A new trampoline has no instructions, which must be added by the caller.
+     */
+    public static MethodNode getOrCreate(Target target, MethodNode handler, String descriptor) {
+        return getOrCreate(target, METHOD_PREFIX + handler.name + "$" + SharedCallbackInfo.sanitize(target.method.name), descriptor);
+    }
+
+    /**
+     * Finds or creates the method which calls an asynchronous handler with the arguments in an AsyncCarrier.
+     *
+     * @see dev.cbyrne.betterinject.async.AsyncDispatcher
+     */
+    public static MethodNode getOrCreateAsync(Target target, MethodNode handler, String descriptor) {
+        return getOrCreate(target, ASYNC_METHOD_PREFIX + handler.name + "$" + SharedCallbackInfo.sanitize(target.method.name), descriptor);
+    }
+
+    private static MethodNode getOrCreate(Target target, String name, String descriptor) {
+
+        for (MethodNode method : target.classNode.methods) {
+            if (method.name.equals(name) && method.desc.equals(descriptor)) {
+                return method;
+            }
+        }
+
+        MethodNode trampoline = new MethodNode(
+            Opcodes.ACC_PRIVATE | Opcodes.ACC_STATIC | Opcodes.ACC_SYNTHETIC,
+            name,
+            descriptor,
+            null,
+            null
+        );
+
+        target.classNode.methods.add(trampoline);
+        return trampoline;
+    }
+}
@@ -0,0 +1,69 @@
+package dev.cbyrne.betterinject.hooks;
+
+import dev.cbyrne.betterinject.utils.LogUtils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Handlers which are never injected, identified in the same format as {@link Hooks}: "mixin.class.Name::handlerName".
+ * "mixin.class.Name::*" denies every handler in a mixin.
+ * <p/>
+ * The list is read by {@link dev.cbyrne.betterinject.BetterInject#initialize()} from the {@value #PROPERTY} system
+ * property (comma-separated), and the file in {@value #FILE_PROPERTY} (one handler per line, # for comments). Unlike
+ * {@code toggleable = true}, a denied handler adds no bytecode at all, but can't be enabled without restarting.
+ */
+public final class HookDenyList {
+    public static final String PROPERTY = "betterinject.deny";
+    public static final String FILE_PROPERTY = "betterinject.deny.file";
+
+    private static volatile Set<String> denied = Collections.emptySet();
+
+    private HookDenyList() {
+    }
+
+    public static void initialize() {
+        Set<String> entries = new HashSet<>();
+        add(entries, System.getProperty(PROPERTY, "").split(","));
+
+        String file = System.getProperty(FILE_PROPERTY);
+        if (file != null && !file.isEmpty()) {
+            try {
+                add(entries, Files.readAllLines(Paths.get(file), StandardCharsets.UTF_8).toArray(new String[0]));
+            } catch (IOException e) {
+                LogUtils.LOGGER.warn("Failed to read the hook deny-list from {}", file, e);
+            }
+        }
+
+        if (!entries.isEmpty()) {
+            LogUtils.LOGGER.info("{} hooks have been denied, and will not be injected", entries.size());
+        }
+
+        denied = Collections.unmodifiableSet(entries);
+    }
+
+    public static boolean isDenied(String id) {
+        Set<String> denied = HookDenyList.denied;
+        if (denied.isEmpty()) {
+            return false;
+        }
+
+        int separator = id.indexOf("::");
+        return denied.contains(id) || (separator != -1 && denied.contains(id.substring(0, separator) + "::*"));
+    }
+
+    private static void add(Set<String> entries, String[] lines) {
+        for (String line : lines) {
+            int comment = line.indexOf('#');
+            String entry = (comment != -1 ? line.substring(0, comment) : line).trim();
+            if (!entry.isEmpty()) {
+                entries.add(entry);
+            }
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package dev.cbyrne.betterinject.hooks;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodHandles.Lookup;
+import java.lang.invoke.MethodType;
+import java.lang.invoke.MutableCallSite;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Enables and disables handlers injected with {@code toggleable = true}, without transforming their targets again.
+ * <p/>
+ * A hook is identified by its handler, in the format of "mixin.class.Name::handlerName".
+ * <pre>
+ * Hooks.setEnabled("my.mod.mixin.MinecraftMixin::myMod$onTick", false);
+ * </pre>
+ * Each hook is guarded by an invokedynamic instruction which is bound to a {@link MutableCallSite} returning a constant.
+ * The JIT folds this constant, so a disabled hook costs nothing once its target is compiled. Toggling a hook re-binds the
+ * call site, which deoptimizes any code that depended on the previous value.
+ */
+public final class Hooks {
+    private static final Map<String, Hook> HOOKS = new ConcurrentHashMap<>();
+
+    private Hooks() {
+    }
+
+    /**
+     * Enables or disables a hook. This can be called before the hook's target has been loaded.
+     */
+    public static void setEnabled(String id, boolean enabled) {
+        getOrCreate(id, enabled).setEnabled(enabled);
+    }
+
+    /**
+     * If a hook is enabled, this is false for hooks which have not been loaded or toggled yet.
+     */
+    public static boolean isEnabled(String id) {
+        Hook hook = HOOKS.get(id);
+        return hook != null && hook.enabled;
+    }
+
+    /**
+     * The ids of every hook which has been loaded or toggled.
+     */
+    public static Set<String> getIds() {
+        return Collections.unmodifiableSet(HOOKS.keySet());
+    }
+
+    /**
+     * The bootstrap method for a hook's guard, every guard for the same hook shares a call site.
+     *
+     * @param enabledByDefault 1 if the hook should be enabled when it has not been toggled yet, otherwise 0
+     */
+    public static CallSite bootstrap(Lookup lookup, String name, MethodType type, String id, int enabledByDefault) {
+        return getOrCreate(id, enabledByDefault != 0).callSite;
+    }
+
+    /**
+     * Used instead of {@link #bootstrap} by targets in class files which are too old for invokedynamic.
+     */
+    public static boolean check(String id, boolean enabledByDefault) {
+        return getOrCreate(id, enabledByDefault).enabled;
+    }
+
+    private static Hook getOrCreate(String id, boolean enabled) {
+        Hook hook = HOOKS.get(id);
+        if (hook != null) {
+            return hook;
+        }
+
+        Hook created = new Hook(enabled);
+        hook = HOOKS.putIfAbsent(id, created);
+        return hook == null ? created : hook;
+    }
+
+    private static class Hook {
+        private final MutableCallSite callSite = new MutableCallSite(MethodType.methodType(boolean.class));
+        private volatile boolean enabled;
+
+        private Hook(boolean enabled) {
+            this.enabled = enabled;
+            this.callSite.setTarget(MethodHandles.constant(boolean.class, enabled));
+        }
+
+        private synchronized void setEnabled(boolean enabled) {
+            if (this.enabled == enabled) {
+                return;
+            }
+
+            this.enabled = enabled;
+            this.callSite.setTarget(MethodHandles.constant(boolean.class, enabled));
+            MutableCallSite.syncAll(new MutableCallSite[]{this.callSite});
+        }
+    }
+}
@@ -19,7 +19,14 @@ public class InjectInjectionInfo extends InjectionInfo {
     protected Injector parseInjector(AnnotationNode injectAnnotation) {
         boolean isCancellable = Annotations.getValue(injectAnnotation, "cancellable", Boolean.FALSE);
         boolean print = Annotations.getValue(injectAnnotation, "print", Boolean.FALSE);
+        boolean shareCallbackInfo = Annotations.getValue(injectAnnotation, "shareCallbackInfo", Boolean.FALSE);
+        boolean trampoline = Annotations.getValue(injectAnnotation, "trampoline", Boolean.FALSE);
+        boolean toggleable = Annotations.getValue(injectAnnotation, "toggleable", Boolean.FALSE);
+        boolean enabledByDefault = Annotations.getValue(injectAnnotation, "enabledByDefault", Boolean.TRUE);
+        boolean async = Annotations.getValue(injectAnnotation, "async", Boolean.FALSE);
+        int sampleRate = Annotations.getValue(injectAnnotation, "sampleRate", 1);
+        boolean profile = Annotations.getValue(injectAnnotation, "profile", Boolean.FALSE);
 
-        return new InjectInjector(this, isCancellable, print);
+        return new InjectInjector(this, isCancellable, print, shareCallbackInfo, trampoline, toggleable, enabledByDefault, async, sampleRate, profile);
     }
 }
@@ -2,23 +2,41 @@ package dev.cbyrne.betterinject.injector;
 
 import dev.cbyrne.betterinject.annotations.Arg;
 import dev.cbyrne.betterinject.annotations.Local;
+import dev.cbyrne.betterinject.async.AsyncCarrier;
+import dev.cbyrne.betterinject.async.AsyncDispatcher;
 import dev.cbyrne.betterinject.helpers.CallbackInfoHelper;
+import dev.cbyrne.betterinject.helpers.CallbackSite;
+import dev.cbyrne.betterinject.helpers.HookGuard;
+import dev.cbyrne.betterinject.helpers.SampleGuard;
+import dev.cbyrne.betterinject.helpers.SiteGuard;
+import dev.cbyrne.betterinject.helpers.LocalSlotPlanner;
+import dev.cbyrne.betterinject.helpers.LocalsIndex;
+import dev.cbyrne.betterinject.helpers.MutableLocals;
+import dev.cbyrne.betterinject.helpers.SharedCallbackInfo;
+import dev.cbyrne.betterinject.helpers.Trampolines;
+import dev.cbyrne.betterinject.hooks.HookDenyList;
+import dev.cbyrne.betterinject.injector.signature.CallbackInfoAnalysis;
+import dev.cbyrne.betterinject.injector.signature.HandlerIndex;
+import dev.cbyrne.betterinject.injector.signature.HandlerParameter;
+import dev.cbyrne.betterinject.injector.signature.HandlerSignature;
+import dev.cbyrne.betterinject.injector.signature.NoOpAnalysis;
 import dev.cbyrne.betterinject.injector.strategy.ArgumentHandlingStrategy;
+import dev.cbyrne.betterinject.metrics.BytecodeBudget;
+import dev.cbyrne.betterinject.metrics.InjectionMetrics;
+import dev.cbyrne.betterinject.profiling.HandlerProfiler;
+import dev.cbyrne.betterinject.utils.BytecodeUtils;
 import dev.cbyrne.betterinject.utils.CallbackInfoUtils;
+import org.objectweb.asm.Handle;
 import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.Type;
-import org.objectweb.asm.tree.AnnotationNode;
-import org.objectweb.asm.tree.InsnList;
-import org.objectweb.asm.tree.InsnNode;
-import org.objectweb.asm.tree.VarInsnNode;
+import org.objectweb.asm.tree.*;
 import org.spongepowered.asm.mixin.injection.code.Injector;
-import org.spongepowered.asm.mixin.injection.modify.LocalVariableDiscriminator;
 import org.spongepowered.asm.mixin.injection.struct.InjectionInfo;
 import org.spongepowered.asm.mixin.injection.struct.InjectionNodes.InjectionNode;
 import org.spongepowered.asm.mixin.injection.struct.Target;
 import org.spongepowered.asm.mixin.injection.throwables.InjectionError;
-import org.spongepowered.asm.util.Annotations;
 import org.spongepowered.asm.util.Bytecode;
+import org.spongepowered.asm.util.Constants;
 
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -29,40 +47,243 @@ import static org.spongepowered.asm.mixin.injection.modify.LocalVariableDiscrimi
 public class InjectInjector extends Injector {
     private final boolean isCancellable;
     private final boolean print;
-    private CallbackInfoHelper callbackInfoHelper = null;
-    private final ArgumentHandlingStrategy argumentStrategy;
+    private final boolean shareCallbackInfo;
+    private final boolean trampoline;
+    private final boolean async;
 
-    public InjectInjector(InjectionInfo info, boolean isCancellable, boolean print) {
+    private final int sampleRate;
+
+    /**
+     * The checks which decide if this handler is called, e.g. if it has been disabled, or if this call is not sampled
+     */
+    private final List<SiteGuard> guards = new ArrayList<>();
+    private final HandlerSignature signature;
+    private final CallbackInfoAnalysis.Usage callbackInfoUsage;
+
+    /**
+     * Identifies this handler in metrics, in the format of "mixin.class.Name::handlerName"
+     */
+    private final String handlerId;
+
+    /**
+     * The index of this handler's histogram in the {@link HandlerProfiler}, or -1 if it is not profiled
+     */
+    private final int profileIndex;
+
+    /**
+     * Why this handler is not injected at all, or null if it is injected
+     */
+    private final String eliminationReason;
+
+    public InjectInjector(
+        InjectionInfo info,
+        boolean isCancellable,
+        boolean print,
+        boolean shareCallbackInfo,
+        boolean trampoline,
+        boolean toggleable,
+        boolean enabledByDefault,
+        boolean async,
+        int sampleRate,
+        boolean profile
+    ) {
         super(info, "@Inject");
 
         this.isCancellable = isCancellable;
         this.print = print;
-        this.argumentStrategy = ArgumentHandlingStrategy.fromMethod(this.methodNode, this.methodArgs);
+        this.shareCallbackInfo = shareCallbackInfo;
+        this.trampoline = trampoline;
+        this.async = async;
+        this.sampleRate = sampleRate;
+        String mixinClassName = info.getContext().getMixin().getClassName();
+        this.signature = HandlerSignature.of(
+            this.methodNode,
+            this.methodArgs,
+            HandlerIndex.lookup(mixinClassName, this.methodNode.name + this.methodNode.desc)
+        );
+        this.handlerId = mixinClassName + "::" + this.methodNode.name;
+        this.callbackInfoUsage = CallbackInfoAnalysis.analyze(this.methodNode, this.isStatic, this.signature);
+        this.eliminationReason = this.findEliminationReason(profile);
+        this.profileIndex = profile && this.eliminationReason == null ? HandlerProfiler.register(this.handlerId) : -1;
+
+        if (toggleable) {
+            this.guards.add(new HookGuard(this.handlerId, enabledByDefault));
+        }
+
+        if (sampleRate > 1) {
+            this.guards.add(new SampleGuard(this.methodNode.name, sampleRate));
+        }
     }
 
     /**
+     * Nothing about the current target or node is stored on the injector, it is all passed to the methods below, so
+     * that targets can be transformed concurrently by parallel-capable class loaders.
+     *
      * @param target Everything about the target class
      * @param node   The node which we are injecting to, i.e. the first instruction if @At("HEAD")
      */
     @Override
     protected void inject(Target target, InjectionNode node) {
-        int opcode = node.getCurrentTarget().getOpcode();
-        this.callbackInfoHelper = new CallbackInfoHelper(
-            this.isCallbackInfoNeeded(),
-            node.getCurrentTarget() instanceof InsnNode && opcode >= Opcodes.IRETURN && opcode < Opcodes.RETURN
+        // A handler which is not injected should still fail on the same mistakes as one which is
+        this.checkSupported(target, node);
+
+        if (this.eliminationReason != null) {
+            Injector.logger.debug("{} is not injected into {}, as {}", this, target, this.eliminationReason);
+
+            // Nothing calls invokeHandler for this node, but it still counts towards require and expect
+            this.info.addCallbackInvocation(this.methodNode);
+            return;
+        }
+
+        if (InjectionMetrics.isEnabled() || BytecodeBudget.isEnabled()) {
+            this.injectMeasured(target, node);
+        } else {
+            this.injectAtNode(target, node);
+        }
+    }
+
+    /**
+     * A handler which is denied, or does nothing, costs no bytecode or time in its targets if it is never injected.
+     * Profiled handlers are still injected, as the time spent calling them is what the user is asking for.
+     */
+    private String findEliminationReason(boolean profile) {
+        if (HookDenyList.isDenied(this.handlerId)) {
+            return "it is in the deny-list";
+        }
+
+        if (!profile && NoOpAnalysis.isNoOp(this.methodNode)) {
+            return "it does nothing";
+        }
+
+        return null;
+    }
+
+    /**
+     * Records the cost of injecting at this node in {@link InjectionMetrics} and {@link BytecodeBudget}, if enabled.
+     */
+    private void injectMeasured(Target target, InjectionNode node) {
+        int instructionsBefore = target.insns.size();
+        int codeSizeBefore = BytecodeUtils.estimateCodeSize(target.method);
+        int maxLocalsBefore = target.getMaxLocals();
+
+        long start = System.nanoTime();
+        long localsResolutionNanos = this.injectAtNode(target, node);
+        long injectNanos = System.nanoTime() - start;
+
+        String targetId = target.classNode.name + "::" + target.method.name + target.method.desc;
+        int codeSizeAfter = BytecodeUtils.estimateCodeSize(target.method);
+
+        if (InjectionMetrics.isEnabled()) {
+            InjectionMetrics.getInstance().record(
+                this.handlerId,
+                targetId,
+                injectNanos,
+                localsResolutionNanos,
+                target.insns.size() - instructionsBefore,
+                target.getMaxLocals() - maxLocalsBefore,
+                codeSizeAfter - codeSizeBefore
+            );
+        }
+
+        if (BytecodeBudget.isEnabled()) {
+            this.checkBytecodeBudget(target, targetId, codeSizeBefore, codeSizeAfter, maxLocalsBefore);
+        }
+    }
+
+    /**
+     * Reports the JIT limits which the target has grown past, because of this handler or the ones before it.
+     *
+     * @see BytecodeBudget
+     */
+    private void checkBytecodeBudget(Target target, String targetId, int codeSizeBefore, int codeSizeAfter, int maxLocalsBefore) {
+        BytecodeBudget budget = BytecodeBudget.getInstance();
+        List<String> crossed = budget.record(
+            target.method,
+            targetId,
+            this.handlerId,
+            codeSizeBefore,
+            codeSizeAfter,
+            maxLocalsBefore,
+            target.getMaxLocals()
         );
 
-        if (argumentStrategy == ArgumentHandlingStrategy.STRICT) {
+        for (String message : crossed) {
+            if (budget.isFailFast()) {
+                Injector.logger.error("Injection failure, a target has grown past a JIT limit. Consider using trampoline = true.", message);
+                throw new InjectionError(message);
+            }
+
+            Injector.logger.warn("{}. Consider using trampoline = true.", message);
+        }
+    }
+
+    /**
+     * Throws an {@link InjectionError} if this handler can not be injected at the node.
+     */
+    private void checkSupported(Target target, InjectionNode node) {
+        if (this.signature.getArgumentStrategy() == ArgumentHandlingStrategy.STRICT) {
             // We are on strict mode, let's check if all the arguments from the target are present on the callback.
             this.checkArgumentsStrict(target);
         }
 
+        if (this.handlerReturnsCancellationFlag()) {
+            // A boolean return value is how the handler tells us to cancel, this only makes sense for void targets.
+            this.checkCancellationFlagSupported(target);
+        }
+
+        if (this.signature.hasReturnValue()) {
+            // @ReturnValue takes the value that is about to be returned, so we must be at a RETURN
+            this.checkReturnValueSupported(target, node);
+        }
+
+        this.checkCallbackInfoSupported(target);
         this.checkTargetModifiers(target, true);
-        this.injectInvokeCallback(target, node);
+
+        if (this.sampleRate != 1) {
+            this.checkSamplingSupported(target);
+        }
+
+        if (this.signature.hasMutableLocals()) {
+            this.checkMutableLocalsSupported(target);
+        }
+
+        if (this.async) {
+            this.checkAsyncSupported(target);
+        }
+    }
+
+    /**
+     * @return The time spent resolving @Arg and @Local parameters, only used for metrics
+     */
+    private long injectAtNode(Target target, InjectionNode node) {
+        LocalsLookup locals = new LocalsLookup();
+
+        if (this.async) {
+            // The handler's arguments are captured and queued, the handler is called by the AsyncDispatcher
+            this.injectAsyncDispatch(target, node, locals);
+        } else if (this.trampoline && !this.signature.hasMutableLocals() && Trampolines.isSupported(target)) {
+            // Only a call to the trampoline, and a branch on its result, are added to the target
+            this.injectTrampolineCall(target, node, locals);
+        } else {
+            if (this.trampoline) {
+                Injector.logger.debug("{} can not use a trampoline in {}, injecting inline instead", this, target);
+            }
+
+            // Any other BetterInject handlers at this node will share the same CallbackInfo and cancellation check
+            CallbackSite site = CallbackSite.getOrCreate(target, node, this.isCancellable, this.shareCallbackInfo, this.guards);
+            this.injectInvokeCallback(target, node, site, locals);
+        }
 
         if (print) {
             Bytecode.printMethod(target.method);
         }
+
+        int savedSlots = LocalSlotPlanner.forTarget(target).getSavedSlots();
+        if (savedSlots > 0) {
+            Injector.logger.debug("{} has saved {} local slots in {} by reusing them", this, savedSlots, target);
+        }
+
+        return locals.resolutionNanos;
     }
 
     /**
@@ -102,70 +323,666 @@ public class InjectInjector extends Injector {
         throw new InjectionError(message);
     }
 
-    private void injectInvokeCallback(Target target, InjectionNode node) {
+    private void checkCancellationFlagSupported(Target target) {
+        String reason = null;
+        if (!this.isCancellable) {
+            reason = "the injection is not cancellable";
+        } else if (!target.returnType.equals(Type.VOID_TYPE)) {
+            reason = "target " + target.method.name + " does not return void";
+        }
+
+        if (reason == null) {
+            return;
+        }
+
+        String message = "Handler " + methodNode.name + " returns boolean, but " + reason;
+        Injector.logger.error("Injection failure, a boolean return value can only be used to cancel void targets.", message);
+
+        throw new InjectionError(message);
+    }
+
+    private void checkCallbackInfoSupported(Target target) {
+        for (HandlerParameter parameter : this.signature.getParameters()) {
+            if (parameter.getKind() != HandlerParameter.Kind.CALLBACK_INFO || CallbackInfoUtils.canReceiveCallbackInfo(parameter.getType(), target.returnType)) {
+                continue;
+            }
+
+            String message = "Handler " + methodNode.name + " takes a " + parameter.getType().getClassName() + ", but target " + target.method.name + " returns " + target.returnType.getClassName();
+            Injector.logger.error("Injection failure, a primitive CallbackInfoReturnable must match the target's return type.", message);
+
+            throw new InjectionError(message);
+        }
+    }
+
+    private void checkSamplingSupported(Target target) {
+        String reason = null;
+        String summary = null;
+        if (this.sampleRate < 1) {
+            reason = "the sample rate must be at least 1";
+            summary = "Injection failure, sampleRate must be at least 1.";
+        } else if (this.isCancellable) {
+            reason = "it is cancellable, which would make cancelling the target depend on the sample";
+            summary = "Injection failure, sampled handlers must not be cancellable.";
+        } else if (!SampleGuard.isSupported(target)) {
+            reason = "target class " + target.classNode.name + " is an interface";
+            summary = "Injection failure, sampled handlers can not be injected into interfaces.";
+        }
+
+        if (reason == null) {
+            return;
+        }
+
+        String message = "Handler " + methodNode.name + " has a sampleRate of " + this.sampleRate + " in " + target.method.name + ", but " + reason;
+        Injector.logger.error(summary, message);
+
+        throw new InjectionError(message);
+    }
+
+    private void checkMutableLocalsSupported(Target target) {
+        String reason = null;
+        if (this.async) {
+            reason = "it is called asynchronously, after the target has continued";
+        } else {
+            for (HandlerParameter parameter : this.signature.getParameters()) {
+                if (parameter.isMutable() && parameter.getLocalType() == null) {
+                    reason = "parameter " + parameter.getIndex() + " (" + parameter.getType().getClassName() + ") is not a LocalRef with a type argument, or a primitive LocalRef";
+                    break;
+                }
+            }
+        }
+
+        if (reason == null) {
+            return;
+        }
+
+        String message = "Handler " + methodNode.name + " has a mutable @Local for target " + target.method.name + ", but " + reason;
+        Injector.logger.error("Injection failure, mutable @Local parameters must be a LocalRef, and can not be used with async.", message);
+
+        throw new InjectionError(message);
+    }
+
+    private void checkAsyncSupported(Target target) {
+        String reason = null;
+        if (this.isCancellable) {
+            reason = "it is cancellable";
+        } else if (!this.returnType.equals(Type.VOID_TYPE)) {
+            reason = "it does not return void";
+        } else if (this.signature.isCallbackInfoNeeded()) {
+            reason = "it takes a CallbackInfo";
+        } else if (!Trampolines.isSupported(target) || (target.classNode.version & 0xFFFF) < Opcodes.V1_7) {
+            reason = "target class " + target.classNode.name + " is an interface, or older than Java 7";
+        }
+
+        if (reason == null) {
+            return;
+        }
+
+        String message = "Handler " + methodNode.name + " can not be called asynchronously from " + target.method.name + ", as " + reason;
+        Injector.logger.error("Injection failure, async handlers must be non-cancellable, return void, and not take a CallbackInfo.", message);
+
+        throw new InjectionError(message);
+    }
+
+    private void checkReturnValueSupported(Target target, InjectionNode node) {
+        String reason = null;
+        if (!this.isValueReturn(node)) {
+            reason = "it is not injected at a RETURN of a non-void target";
+        } else {
+            for (HandlerParameter parameter : this.signature.getParameters()) {
+                if (parameter.getKind() == HandlerParameter.Kind.RETURN_VALUE && !this.canReceiveReturnValue(parameter.getType(), target.returnType)) {
+                    reason = "@ReturnValue " + parameter.getType().getClassName() + " can not hold " + target.returnType.getClassName();
+                    break;
+                }
+            }
+        }
+
+        if (reason == null) {
+            return;
+        }
+
+        String message = "Handler " + methodNode.name + " has a @ReturnValue parameter for target " + target.method.name + ", but " + reason;
+        Injector.logger.error("Injection failure, @ReturnValue can only be used at a RETURN, with the target's return type.", message);
+
+        throw new InjectionError(message);
+    }
+
+    /**
+     * Primitives must match exactly, as we don't box. Objects can be received as themselves or as Object.
+     */
+    private boolean canReceiveReturnValue(Type parameterType, Type returnType) {
+        if (parameterType.equals(returnType)) {
+            return true;
+        }
+
+        return returnType.getSort() >= Type.ARRAY && parameterType.getDescriptor().equals("Ljava/lang/Object;");
+    }
+
+    private void injectInvokeCallback(Target target, InjectionNode node, CallbackSite site, LocalsLookup locals) {
+        LocalsIndex localsIndex = LocalsIndex.forTarget(target);
+        localsIndex.clearIfChanged();
+
+        CallbackInfoHelper callbackInfoHelper = site.getCallbackInfoHelper();
         InsnList instructions = new InsnList();
 
+        // If the handler only cancels its CallbackInfo, call a copy of it which returns true instead
+        boolean useCancellationFlag = this.canUseCancellationFlag(target);
+        MethodNode handler = useCancellationFlag
+            ? CallbackInfoAnalysis.getOrCreateCancellationFlagHandler(this.classNode, this.methodNode, this.isStatic, this.signature)
+            : this.methodNode;
+
         // CallbackInfo info = new CallbackInfo(...);
-        this.callbackInfoHelper.generateCallbackInfo(instructions, target, isCancellable);
+        if (this.isCallbackInfoNeeded(target)) {
+            callbackInfoHelper.generateCallbackInfo(instructions, target, isCancellable);
+        }
+
+        // T returnValue = ...; for @ReturnValue, if the CallbackInfo didn't already store it
+        if (this.signature.hasReturnValue()) {
+            callbackInfoHelper.storeReturnValue(instructions, target);
+        }
+
+        // long start = System.nanoTime(); if profiled
+        int profileStartSlot = this.startProfile(instructions, target);
 
         // Load the arguments that are desired from the handler
-        this.pushDesiredArguments(instructions, target, node);
+        List<MutableLocal> mutableLocals = new ArrayList<>();
+        this.pushDesiredArguments(instructions, target, node, callbackInfoHelper, locals, mutableLocals);
 
         // Add a method call to the handler to the list
-        this.invokeHandler(instructions);
+        LabelNode callStart = new LabelNode();
+        LabelNode callEnd = new LabelNode();
+        instructions.add(callStart);
+        this.invokeHandler(instructions, handler);
+        instructions.add(callEnd);
+
+        // local = ref.get(); for @Local(mutable = true)
+        this.writeBackMutableLocals(instructions, target, mutableLocals, callStart, callEnd);
+        this.recordProfile(instructions, profileStartSlot);
+
+        if (isCancellable && (this.handlerReturnsCancellationFlag() || useCancellationFlag)) {
+            this.wrapInCancellationFlagCheck(instructions);
+        }
 
-        // Wrap the handler invocation in an if(callbackInfo.isCancelled()) check
-        if (isCancellable) {
-            this.callbackInfoHelper.wrapInCancellationCheck(instructions, target);
+        // if (callbackInfo.isCancelled()) { return; } straight after the handler, so that the handlers after it at this
+        // node are not called if it cancels the target
+        if (isCancellable && this.isCallbackInfoNeeded(target)) {
+            callbackInfoHelper.wrapInCancellationCheck(instructions, target);
         }
 
-        // Add our instructions before the targeted node
-        target.insns.insertBefore(node.getCurrentTarget(), instructions);
+        // Add our instructions after any other handlers at this node
+        site.insertHandler(target, instructions);
+
+        // Our own instructions don't change the locals at any node, so the cached locals can still be used
+        localsIndex.acknowledgeChanges();
     }
 
-    private void pushDesiredArguments(InsnList instructions, Target target, InjectionNode node) {
-        // Load `this` if not static
+    /**
+     * Injects a call to this handler's trampoline, which creates the CallbackInfo and calls the handler out of line.
+     * The trampoline takes the return value (if it is needed), `this` (if the handler is not static), and then the
+     * handler's arguments, apart from the CallbackInfo.
+     *
+     * @see Trampolines
+     */
+    private void injectTrampolineCall(Target target, InjectionNode node, LocalsLookup locals) {
+        LocalsIndex localsIndex = LocalsIndex.forTarget(target);
+        localsIndex.clearIfChanged();
+
+        InsnList instructions = new InsnList();
+        List<Type> trampolineArgs = new ArrayList<>();
+        int profileStartSlot = this.startProfile(instructions, target);
+
+        // The return value is passed first, as it is already on the top of the stack
+        boolean passReturnValue = this.isValueReturn(node) && (this.signature.hasReturnValue() || this.signature.isCallbackInfoNeeded());
+        if (passReturnValue) {
+            instructions.add(new InsnNode(target.returnType.getSize() == 1 ? Opcodes.DUP : Opcodes.DUP2));
+            trampolineArgs.add(target.returnType);
+        }
+
         if (!this.isStatic) {
             instructions.add(new VarInsnNode(Opcodes.ALOAD, 0));
+            trampolineArgs.add(Type.getObjectType(this.classNode.name));
         }
 
-        // Let's only push arguments if there's any on the handler method
-        if (this.methodArgs.length == 0) {
-            return;
+        for (HandlerParameter parameter : this.signature.getParameters()) {
+            switch (parameter.getKind()) {
+                case ARG:
+                case LOCAL:
+                    this.pushLocalFromAnnotation(instructions, target, node, parameter, locals);
+                    trampolineArgs.add(parameter.getType());
+                    break;
+                case POSITIONAL:
+                    instructions.add(new VarInsnNode(parameter.getLoadOpcode(), target.getArgIndices()[parameter.getIndex()]));
+                    trampolineArgs.add(parameter.getType());
+                    break;
+                default:
+                    // The CallbackInfo is created by the trampoline, and the return value has already been passed
+                    break;
+            }
         }
 
-        for (int i = 0; i < this.methodArgs.length; i++) {
-            // We want to get the first argument from the target that matches the current callback argument's type
-            Type argumentType = this.methodArgs[i];
+        Type trampolineReturnType = this.trampolineReturnType(target);
+        String descriptor = Type.getMethodDescriptor(trampolineReturnType, trampolineArgs.toArray(new Type[0]));
+        MethodNode trampoline = Trampolines.getOrCreate(target, this.methodNode, descriptor);
+        if (trampoline.instructions.size() == 0) {
+            this.generateTrampoline(target, trampoline, passReturnValue, this.isValueReturn(node));
 
-            // If the descriptor is CallbackInfo, we need to push it
-            if (CallbackInfoUtils.typeIsCallbackInfo(argumentType)) {
-                this.callbackInfoHelper.pushCallbackInfoIfRequired(instructions);
-                continue;
+            if (print) {
+                Bytecode.printMethod(trampoline);
             }
+        } else {
+            // The handler is only invoked once, in the trampoline, so each other node which calls it is counted here
+            this.info.addCallbackInvocation(this.methodNode);
+        }
+
+        instructions.add(new MethodInsnNode(Opcodes.INVOKESTATIC, target.classNode.name, trampoline.name, trampoline.desc, false));
+        this.recordProfile(instructions, profileStartSlot);
+        this.wrapInTrampolineResultCheck(instructions, target, trampolineReturnType);
+
+        target.insns.insertBefore(node.getCurrentTarget(), this.wrapInGuards(instructions, target));
+
+        // The trampoline call doesn't change the locals at any node, so the cached locals can still be used
+        localsIndex.acknowledgeChanges();
+    }
 
-            // Check if the index was overridden by @Arg or @Local
-            AnnotationNode argNode = Annotations.getVisibleParameter(methodNode, Arg.class, i);
-            AnnotationNode localNode = Annotations.getVisibleParameter(methodNode, Local.class, i);
-
-            AnnotationNode annotationNode = argNode != null ? argNode : localNode;
-            boolean isArgumentNode = argNode != null;
-
-            if (annotationNode != null) {
-                // Push the local from the annotation's data, i.e. find a local based on its ordinal
-                this.pushLocalFromAnnotation(
-                    instructions,
-                    target,
-                    node,
-                    annotationNode,
-                    argumentType,
-                    isArgumentNode
-                );
-            } else if (argumentStrategy == ArgumentHandlingStrategy.STRICT) {
-                // We are in strict mode, arguments should be in order.
-                instructions.add(new VarInsnNode(argumentType.getOpcode(Opcodes.ILOAD), target.getArgIndices()[i]));
+    /**
+     * The trampoline returns whether a void target was cancelled, or the CallbackInfoReturnable if a non-void target was
+     * cancelled (otherwise null). If the injection can't be cancelled, it returns nothing.
+     */
+    private Type trampolineReturnType(Target target) {
+        if (!this.isCancellable) {
+            return Type.VOID_TYPE;
+        }
+
+        if (target.returnType.equals(Type.VOID_TYPE)) {
+            boolean canCancel = this.handlerReturnsCancellationFlag() || this.signature.isCallbackInfoNeeded();
+            return canCancel ? Type.BOOLEAN_TYPE : Type.VOID_TYPE;
+        }
+
+        if (this.signature.isCallbackInfoNeeded()) {
+            return Type.getObjectType(CallbackInfoUtils.callbackInfoClassName(target.returnType));
+        }
+
+        return Type.VOID_TYPE;
+    }
+
+    /**
+     * Generates the body of a trampoline, this is the same as what {@link #injectInvokeCallback} inserts into the target.
+     */
+    private void generateTrampoline(Target target, MethodNode trampoline, boolean passReturnValue, boolean isValueReturn) {
+        InsnList instructions = trampoline.instructions;
+        Type[] args = Type.getArgumentTypes(trampoline.desc);
+        int[] argSlots = new int[args.length];
+        int nextSlot = 0;
+        for (int i = 0; i < args.length; i++) {
+            argSlots[i] = nextSlot;
+            nextSlot += args[i].getSize();
+        }
+
+        // The return value and `this` come before the handler's arguments
+        int nextArg = (passReturnValue ? 1 : 0) + (this.isStatic ? 0 : 1);
+        String callbackInfoClass = CallbackInfoUtils.callbackInfoClassName(target.returnType);
+        String sharedCallbackInfoField = null;
+        int callbackInfoSlot = -1;
+
+        if (this.signature.isCallbackInfoNeeded()) {
+            boolean canShare = this.shareCallbackInfo && !this.isCancellable && !isValueReturn && !target.method.name.equals(Constants.CLINIT);
+            if (canShare) {
+                sharedCallbackInfoField = SharedCallbackInfo.getOrCreate(target);
+            } else {
+                callbackInfoSlot = nextSlot++;
+
+                // CallbackInfo ci = new CallbackInfo("{target.method.name}", isCancellable, ...);
+                instructions.add(new TypeInsnNode(Opcodes.NEW, callbackInfoClass));
+                instructions.add(new InsnNode(Opcodes.DUP));
+                instructions.add(new LdcInsnNode(target.method.name));
+                instructions.add(new InsnNode(this.isCancellable ? Opcodes.ICONST_1 : Opcodes.ICONST_0));
+                String callbackInfoCtorDesc = CallbackInfoUtils.CTOR;
+                if (passReturnValue) {
+                    instructions.add(new VarInsnNode(target.returnType.getOpcode(Opcodes.ILOAD), argSlots[0]));
+                    callbackInfoCtorDesc = CallbackInfoUtils.constructorDescriptor(target.returnType);
+                }
+                instructions.add(new MethodInsnNode(Opcodes.INVOKESPECIAL, callbackInfoClass, Constants.CTOR, callbackInfoCtorDesc, false));
+                instructions.add(new VarInsnNode(Opcodes.ASTORE, callbackInfoSlot));
+            }
+        }
+
+        if (!this.isStatic) {
+            instructions.add(new VarInsnNode(Opcodes.ALOAD, argSlots[passReturnValue ? 1 : 0]));
+        }
+
+        for (HandlerParameter parameter : this.signature.getParameters()) {
+            switch (parameter.getKind()) {
+                case CALLBACK_INFO:
+                    if (sharedCallbackInfoField != null) {
+                        SharedCallbackInfo.push(instructions, target, sharedCallbackInfoField);
+                    } else {
+                        instructions.add(new VarInsnNode(Opcodes.ALOAD, callbackInfoSlot));
+                    }
+                    break;
+                case RETURN_VALUE:
+                    instructions.add(new VarInsnNode(parameter.getLoadOpcode(), argSlots[0]));
+                    break;
+                default:
+                    instructions.add(new VarInsnNode(parameter.getLoadOpcode(), argSlots[nextArg++]));
+                    break;
+            }
+        }
+
+        this.invokeHandler(instructions);
+
+        Type returnType = Type.getReturnType(trampoline.desc);
+        if (returnType.equals(Type.VOID_TYPE)) {
+            // The handler's return value is not used
+            if (!this.returnType.equals(Type.VOID_TYPE)) {
+                instructions.add(new InsnNode(this.returnType.getSize() == 1 ? Opcodes.POP : Opcodes.POP2));
+            }
+
+            instructions.add(new InsnNode(Opcodes.RETURN));
+        } else if (returnType.equals(Type.BOOLEAN_TYPE)) {
+            // return handler(...) || ci.isCancelled();
+            if (this.handlerReturnsCancellationFlag() && callbackInfoSlot == -1) {
+                instructions.add(new InsnNode(Opcodes.IRETURN));
             } else {
-                throw new IllegalStateException("Not implemented");
+                if (this.handlerReturnsCancellationFlag()) {
+                    LabelNode ifNotCancelled = new LabelNode();
+                    instructions.add(new JumpInsnNode(Opcodes.IFEQ, ifNotCancelled));
+                    instructions.add(new InsnNode(Opcodes.ICONST_1));
+                    instructions.add(new InsnNode(Opcodes.IRETURN));
+                    instructions.add(ifNotCancelled);
+                }
+
+                instructions.add(new VarInsnNode(Opcodes.ALOAD, callbackInfoSlot));
+                instructions.add(new MethodInsnNode(Opcodes.INVOKEVIRTUAL, callbackInfoClass, "isCancelled", "()Z", false));
+                instructions.add(new InsnNode(Opcodes.IRETURN));
+            }
+        } else {
+            // return ci.isCancelled() ? ci : null;
+            LabelNode ifNotCancelled = new LabelNode();
+            instructions.add(new VarInsnNode(Opcodes.ALOAD, callbackInfoSlot));
+            instructions.add(new MethodInsnNode(Opcodes.INVOKEVIRTUAL, callbackInfoClass, "isCancelled", "()Z", false));
+            instructions.add(new JumpInsnNode(Opcodes.IFEQ, ifNotCancelled));
+            instructions.add(new VarInsnNode(Opcodes.ALOAD, callbackInfoSlot));
+            instructions.add(new InsnNode(Opcodes.ARETURN));
+            instructions.add(ifNotCancelled);
+            instructions.add(new InsnNode(Opcodes.ACONST_NULL));
+            instructions.add(new InsnNode(Opcodes.ARETURN));
+        }
+
+        trampoline.maxLocals = nextSlot;
+        trampoline.maxStack = Math.max(6, nextSlot + 1);
+    }
+
+    /**
+     * Consumes the trampoline's result, returning from the target if it was cancelled.
+     * <p/>
+     * <pre>
+     * CallbackInfoReturnable cir = trampoline(...);
+     * if (cir != null) {
+     *     return cir.getReturnValue{X}();
+     * }
+     * </pre>
+     */
+    private void wrapInTrampolineResultCheck(InsnList instructions, Target target, Type trampolineReturnType) {
+        if (trampolineReturnType.equals(Type.VOID_TYPE)) {
+            return;
+        }
+
+        if (trampolineReturnType.equals(Type.BOOLEAN_TYPE)) {
+            this.wrapInCancellationFlagCheck(instructions);
+            return;
+        }
+
+        LabelNode ifNotCancelled = new LabelNode();
+        instructions.add(new InsnNode(Opcodes.DUP));
+        instructions.add(new JumpInsnNode(Opcodes.IFNULL, ifNotCancelled));
+        CallbackInfoHelper.returnFromCallbackInfo(instructions, target, trampolineReturnType.getInternalName());
+        instructions.add(ifNotCancelled);
+        instructions.add(new InsnNode(Opcodes.POP));
+    }
+
+    /**
+     * Injects instructions which capture the handler's arguments in an {@link AsyncCarrier}, and submit it to the
+     * {@link AsyncDispatcher}. The handler is called by a generated method, which takes its arguments from the carrier.
+     * <p/>
+     * <pre>
+     * AsyncCarrier carrier = AsyncDispatcher.acquire(dispatchMethod, primitiveCount, objectCount);
+     * if (carrier != null) {
+     *     carrier.putObject(0, this);
+     *     carrier.putInt(0, arg);
+     *     AsyncDispatcher.submit(carrier);
+     * }
+     * </pre>
+     */
+    private void injectAsyncDispatch(Target target, InjectionNode node, LocalsLookup locals) {
+        LocalsIndex localsIndex = LocalsIndex.forTarget(target);
+        localsIndex.clearIfChanged();
+
+        InsnList instructions = new InsnList();
+
+        // Only the time spent capturing and submitting is profiled, as that is what the target waits for
+        int profileStartSlot = this.startProfile(instructions, target);
+
+        // T returnValue = ...; for @ReturnValue
+        int returnValueSlot = -1;
+        if (this.signature.hasReturnValue()) {
+            returnValueSlot = LocalSlotPlanner.forTarget(target).returnValueSlot();
+            instructions.add(new InsnNode(target.returnType.getSize() == 1 ? Opcodes.DUP : Opcodes.DUP2));
+            instructions.add(new VarInsnNode(target.returnType.getOpcode(Opcodes.ISTORE), returnValueSlot));
+        }
+
+        // carrier.put{X}(index, value); for `this` and each of the handler's arguments
+        InsnList capture = new InsnList();
+        int[] carrierIndices = new int[this.signature.getParameters().size()];
+        int primitiveCount = 0;
+        int objectCount = 0;
+
+        if (!this.isStatic) {
+            capture.add(new InsnNode(Opcodes.DUP));
+            capture.add(BytecodeUtils.pushInt(objectCount++));
+            capture.add(new VarInsnNode(Opcodes.ALOAD, 0));
+            capture.add(this.carrierAccessor("put", Type.getObjectType("java/lang/Object")));
+        }
+
+        for (HandlerParameter parameter : this.signature.getParameters()) {
+            boolean isObject = parameter.getType().getSort() >= Type.ARRAY;
+            int index = isObject ? objectCount++ : primitiveCount++;
+            carrierIndices[parameter.getIndex()] = index;
+
+            capture.add(new InsnNode(Opcodes.DUP));
+            capture.add(BytecodeUtils.pushInt(index));
+
+            switch (parameter.getKind()) {
+                case ARG:
+                case LOCAL:
+                    this.pushLocalFromAnnotation(capture, target, node, parameter, locals);
+                    break;
+                case RETURN_VALUE:
+                    capture.add(new VarInsnNode(parameter.getLoadOpcode(), returnValueSlot));
+                    break;
+                default:
+                    capture.add(new VarInsnNode(parameter.getLoadOpcode(), target.getArgIndices()[parameter.getIndex()]));
+                    break;
+            }
+
+            capture.add(this.carrierAccessor("put", parameter.getType()));
+        }
+
+        String carrier = Type.getInternalName(AsyncCarrier.class);
+        String dispatcher = Type.getInternalName(AsyncDispatcher.class);
+        MethodNode dispatch = Trampolines.getOrCreateAsync(target, this.methodNode, "(L" + carrier + ";)V");
+        if (dispatch.instructions.size() == 0) {
+            this.generateAsyncDispatch(dispatch, carrierIndices);
+
+            if (print) {
+                Bytecode.printMethod(dispatch);
+            }
+        } else {
+            // The handler is only invoked once, in the dispatch method, so each other node which submits it is counted here
+            this.info.addCallbackInvocation(this.methodNode);
+        }
+
+        LabelNode dropped = new LabelNode();
+        LabelNode end = new LabelNode();
+        instructions.add(new LdcInsnNode(new Handle(Opcodes.H_INVOKESTATIC, target.classNode.name, dispatch.name, dispatch.desc, false)));
+        instructions.add(BytecodeUtils.pushInt(primitiveCount));
+        instructions.add(BytecodeUtils.pushInt(objectCount));
+        instructions.add(new MethodInsnNode(
+            Opcodes.INVOKESTATIC,
+            dispatcher,
+            "acquire",
+            "(Ljava/lang/invoke/MethodHandle;II)L" + carrier + ";",
+            false
+        ));
+        instructions.add(new InsnNode(Opcodes.DUP));
+        instructions.add(new JumpInsnNode(Opcodes.IFNULL, dropped));
+        instructions.add(capture);
+        instructions.add(new MethodInsnNode(Opcodes.INVOKESTATIC, dispatcher, "submit", "(L" + carrier + ";)V", false));
+        instructions.add(new JumpInsnNode(Opcodes.GOTO, end));
+        instructions.add(dropped);
+        instructions.add(new InsnNode(Opcodes.POP));
+        instructions.add(end);
+        this.recordProfile(instructions, profileStartSlot);
+
+        target.insns.insertBefore(node.getCurrentTarget(), this.wrapInGuards(instructions, target));
+
+        // Our own instructions don't change the locals at any node, so the cached locals can still be used
+        localsIndex.acknowledgeChanges();
+    }
+
+    /**
+     * Generates the body of the method which is called by the {@link AsyncDispatcher}, this takes the arguments which
+     * were captured by {@link #injectAsyncDispatch} out of the carrier.
+     */
+    private void generateAsyncDispatch(MethodNode dispatch, int[] carrierIndices) {
+        InsnList instructions = dispatch.instructions;
+
+        if (!this.isStatic) {
+            instructions.add(new VarInsnNode(Opcodes.ALOAD, 0));
+            instructions.add(BytecodeUtils.pushInt(0));
+            instructions.add(this.carrierAccessor("get", Type.getObjectType("java/lang/Object")));
+            instructions.add(new TypeInsnNode(Opcodes.CHECKCAST, this.classNode.name));
+        }
+
+        for (HandlerParameter parameter : this.signature.getParameters()) {
+            instructions.add(new VarInsnNode(Opcodes.ALOAD, 0));
+            instructions.add(BytecodeUtils.pushInt(carrierIndices[parameter.getIndex()]));
+            instructions.add(this.carrierAccessor("get", parameter.getType()));
+
+            if (parameter.getType().getSort() >= Type.ARRAY && !parameter.getType().getDescriptor().equals("Ljava/lang/Object;")) {
+                instructions.add(new TypeInsnNode(Opcodes.CHECKCAST, parameter.getType().getInternalName()));
+            }
+        }
+
+        this.invokeHandler(instructions);
+        instructions.add(new InsnNode(Opcodes.RETURN));
+
+        dispatch.maxLocals = 1;
+        dispatch.maxStack = 3 + this.signature.getParameters().size() * 2;
+    }
+
+    /**
+     * A call to AsyncCarrier's put{X}(int, value) or get{X}(int) method for this type. Booleans, bytes, chars and
+     * shorts are stored as ints, and every reference type is stored as an Object.
+     */
+    private MethodInsnNode carrierAccessor(String prefix, Type type) {
+        Type storedType;
+        switch (type.getSort()) {
+            case Type.LONG:
+                storedType = Type.LONG_TYPE;
+                break;
+            case Type.FLOAT:
+                storedType = Type.FLOAT_TYPE;
+                break;
+            case Type.DOUBLE:
+                storedType = Type.DOUBLE_TYPE;
+                break;
+            case Type.OBJECT:
+            case Type.ARRAY:
+                storedType = Type.getObjectType("java/lang/Object");
+                break;
+            default:
+                storedType = Type.INT_TYPE;
+                break;
+        }
+
+        String name = prefix + (storedType.getSort() == Type.OBJECT ? "Object" : capitalize(storedType.getClassName()));
+        String descriptor = prefix.equals("put")
+            ? Type.getMethodDescriptor(Type.VOID_TYPE, Type.INT_TYPE, storedType)
+            : Type.getMethodDescriptor(storedType, Type.INT_TYPE);
+
+        return new MethodInsnNode(Opcodes.INVOKEVIRTUAL, Type.getInternalName(AsyncCarrier.class), name, descriptor, false);
+    }
+
+    private static String capitalize(String name) {
+        return Character.toUpperCase(name.charAt(0)) + name.substring(1);
+    }
+
+    /**
+     * Wraps the instructions in this handler's guards, if it has any.
+     * <p/>
+     * <pre>
+     * if (guard) {
+     *     ...
+     * }
+     * </pre>
+     */
+    private InsnList wrapInGuards(InsnList instructions, Target target) {
+        if (this.guards.isEmpty()) {
+            return instructions;
+        }
+
+        LabelNode skipped = new LabelNode();
+        InsnList guarded = new InsnList();
+        for (SiteGuard guard : this.guards) {
+            guard.jumpIfSkipped(guarded, target, skipped);
+        }
+
+        guarded.add(instructions);
+        guarded.add(skipped);
+        return guarded;
+    }
+
+    private void pushDesiredArguments(
+        InsnList instructions,
+        Target target,
+        InjectionNode node,
+        CallbackInfoHelper callbackInfoHelper,
+        LocalsLookup locals,
+        List<MutableLocal> mutableLocals
+    ) {
+        // Load `this` if not static
+        if (!this.isStatic) {
+            instructions.add(new VarInsnNode(Opcodes.ALOAD, 0));
+        }
+
+        for (HandlerParameter parameter : this.signature.getParameters()) {
+            switch (parameter.getKind()) {
+                case CALLBACK_INFO:
+                    if (this.isCallbackInfoNeeded(target)) {
+                        callbackInfoHelper.pushCallbackInfoIfRequired(instructions, target);
+                    } else {
+                        // The handler never uses it
+                        instructions.add(new InsnNode(Opcodes.ACONST_NULL));
+                    }
+                    break;
+                case ARG:
+                case LOCAL:
+                    if (parameter.isMutable()) {
+                        // Push a reference holding the local's value, it is written back after the handler returns
+                        this.pushMutableLocal(instructions, target, node, parameter, locals, mutableLocals);
+                        break;
+                    }
+
+                    // Push the local from the annotation's data, i.e. find a local based on its ordinal
+                    this.pushLocalFromAnnotation(instructions, target, node, parameter, locals);
+                    break;
+                case RETURN_VALUE:
+                    // The value stored before the handler was called, without boxing it
+                    instructions.add(new VarInsnNode(parameter.getLoadOpcode(), callbackInfoHelper.storeReturnValue(instructions, target)));
+                    break;
+                case POSITIONAL:
+                    // We are in strict mode, arguments should be in order.
+                    instructions.add(new VarInsnNode(parameter.getLoadOpcode(), target.getArgIndices()[parameter.getIndex()]));
+                    break;
             }
         }
     }
@@ -177,33 +994,219 @@ public class InjectInjector extends Injector {
         InsnList instructions,
         Target target,
         InjectionNode injectionNode,
-        AnnotationNode annotationNode,
-        Type desiredType,
-        boolean argumentsOnly
+        HandlerParameter parameter,
+        LocalsLookup locals
+    ) {
+        int local = this.findLocal(target, injectionNode, parameter, locals);
+        instructions.add(new VarInsnNode(parameter.getLoadOpcode(), local));
+    }
+
+    /**
+     * Pushes a reference to a local variable from a {@link Local} with mutable = true, taken from the
+     * {@link dev.cbyrne.betterinject.locals.LocalRefPool}.
+     * <p/>
+     * The pool is loaded once per handler call, and the references are kept in locals for the write-back.
+     */
+    private void pushMutableLocal(
+        InsnList instructions,
+        Target target,
+        InjectionNode injectionNode,
+        HandlerParameter parameter,
+        LocalsLookup locals,
+        List<MutableLocal> mutableLocals
+    ) {
+        LocalSlotPlanner planner = LocalSlotPlanner.forTarget(target);
+        int local = this.findLocal(target, injectionNode, parameter, locals);
+        int poolSlot = planner.localRefPoolSlot();
+        int refSlot = planner.localRefSlot(mutableLocals.size());
+
+        if (mutableLocals.isEmpty()) {
+            // The handler's other arguments are already on the stack, so the pool is stored before acquiring from it
+            InsnList loadPool = new InsnList();
+            MutableLocals.loadPool(loadPool, poolSlot);
+            instructions.insert(loadPool);
+        }
+
+        MutableLocals.acquire(instructions, parameter.getLocalType(), local, poolSlot, refSlot);
+        mutableLocals.add(new MutableLocal(parameter, local, poolSlot, refSlot));
+    }
+
+    /**
+     * Writes the value of each reference back to its local, and releases the references to the pool. If the handler
+     * call between callStart and callEnd throws, the references are released without being written back.
+     * This is done in reverse, as the pool is a stack for each kind of reference.
+     */
+    private void writeBackMutableLocals(
+        InsnList instructions,
+        Target target,
+        List<MutableLocal> mutableLocals,
+        LabelNode callStart,
+        LabelNode callEnd
     ) {
-        LocalVariableDiscriminator discriminator = LocalVariableDiscriminator.parse(annotationNode);
-        Context context = new Context(
+        if (mutableLocals.isEmpty()) {
+            return;
+        }
+
+        List<Type> releasedTypes = new ArrayList<>();
+        for (int i = mutableLocals.size() - 1; i >= 0; i--) {
+            MutableLocal mutableLocal = mutableLocals.get(i);
+            MutableLocals.writeBackAndRelease(
+                instructions,
+                mutableLocal.parameter.getLocalType(),
+                mutableLocal.local,
+                mutableLocal.poolSlot,
+                mutableLocal.refSlot
+            );
+            releasedTypes.add(mutableLocal.parameter.getLocalType());
+        }
+
+        MutableLocals.releaseOnThrow(instructions, target, callStart, callEnd, releasedTypes, mutableLocals.get(0).poolSlot);
+    }
+
+    /**
+     * Finds the local variable for a {@link Arg} or {@link Local}.
+     */
+    private int findLocal(Target target, InjectionNode injectionNode, HandlerParameter parameter, LocalsLookup locals) {
+        long start = System.nanoTime();
+        Context context = LocalsIndex.forTarget(target).getContext(
             this.info,
-            desiredType,
-            argumentsOnly,
-            target,
+            parameter.getLocalType(),
+            parameter.isArgumentsOnly(),
             injectionNode.getCurrentTarget()
         );
 
-        int local = discriminator.findLocal(context);
-        instructions.add(new VarInsnNode(desiredType.getOpcode(Opcodes.ILOAD), local));
+        int local = parameter.getDiscriminator().findLocal(context);
+        locals.resolutionNanos += System.nanoTime() - start;
+        return local;
+    }
+
+    /**
+     * Stores the time before the handler is called, if it is profiled.
+     *
+     * <pre>long start = System.nanoTime();</pre>
+     *
+     * @return The local index of the start time, or -1 if the handler is not profiled
+     */
+    private int startProfile(InsnList instructions, Target target) {
+        if (this.profileIndex == -1) {
+            return -1;
+        }
+
+        int slot = LocalSlotPlanner.forTarget(target).profileStartSlot();
+        instructions.add(new MethodInsnNode(Opcodes.INVOKESTATIC, "java/lang/System", "nanoTime", "()J", false));
+        instructions.add(new VarInsnNode(Opcodes.LSTORE, slot));
+        return slot;
+    }
+
+    /**
+     * Records the time since {@link #startProfile(InsnList, Target)} in this handler's histogram.
+     *
+     * <pre>HandlerProfiler.record(index, start);</pre>
+     */
+    private void recordProfile(InsnList instructions, int startSlot) {
+        if (startSlot == -1) {
+            return;
+        }
+
+        instructions.add(BytecodeUtils.pushInt(this.profileIndex));
+        instructions.add(new VarInsnNode(Opcodes.LLOAD, startSlot));
+        instructions.add(new MethodInsnNode(
+            Opcodes.INVOKESTATIC,
+            Type.getInternalName(HandlerProfiler.class),
+            "record",
+            "(IJ)V",
+            false
+        ));
     }
 
     /**
-     * Loops over each argument in the handler method, and checks if any of them are CallbackInfo(Returnable).
+     * Consumes the boolean returned by the handler, returning from the target if it is true.
+     * Unlike {@link CallbackInfoHelper#wrapInCancellationCheck(InsnList, Target)}, this needs no CallbackInfo.
+     * <p/>
+     * <pre>
+     * if (handler(...)) {
+     *     return;
+     * }
+     * </pre>
      */
-    private boolean isCallbackInfoNeeded() {
-        for (Type argumentType : methodArgs) {
-            if (CallbackInfoUtils.typeIsCallbackInfo(argumentType)) {
+    private void wrapInCancellationFlagCheck(InsnList instructions) {
+        LabelNode ifNotCancelled = new LabelNode();
+        instructions.add(new JumpInsnNode(Opcodes.IFEQ, ifNotCancelled));
+        instructions.add(new InsnNode(Opcodes.RETURN));
+        instructions.add(ifNotCancelled);
+    }
+
+    /**
+     * If a CallbackInfo has to be created for the handler, this is not the case if it never uses it, or if it only
+     * cancels it and {@link #canUseCancellationFlag(Target)}.
+     *
+     * @see CallbackInfoAnalysis
+     */
+    private boolean isCallbackInfoNeeded(Target target) {
+        if (!this.signature.isCallbackInfoNeeded()) {
+            return false;
+        }
+
+        switch (this.callbackInfoUsage) {
+            case UNUSED:
+                return false;
+            case CANCEL_ONLY:
+                return !this.canUseCancellationFlag(target);
+            default:
                 return true;
-            }
         }
+    }
+
+    /**
+     * If the handler's calls to cancel() can be replaced with returning a boolean, which is only possible for a
+     * cancellable injection into a void target. Otherwise, cancel() would throw or need a return value.
+     */
+    private boolean canUseCancellationFlag(Target target) {
+        return this.callbackInfoUsage == CallbackInfoAnalysis.Usage.CANCEL_ONLY
+            && this.isCancellable
+            && target.returnType.equals(Type.VOID_TYPE)
+            && this.returnType.equals(Type.VOID_TYPE);
+    }
+
+    /**
+     * If the node is a return instruction, with the target's return value on the top of the stack.
+     */
+    private boolean isValueReturn(InjectionNode node) {
+        int opcode = node.getCurrentTarget().getOpcode();
+        return node.getCurrentTarget() instanceof InsnNode && opcode >= Opcodes.IRETURN && opcode < Opcodes.RETURN;
+    }
+
+    /**
+     * If the handler returns a boolean, which is used to signal that the target should be cancelled.
+     */
+    private boolean handlerReturnsCancellationFlag() {
+        return this.returnType.equals(Type.BOOLEAN_TYPE);
+    }
+
+    /**
+     * A reference passed to the handler for a mutable @Local, which is written back after the handler returns
+     */
+    private static final class MutableLocal {
+        private final HandlerParameter parameter;
+        private final int local;
+        private final int poolSlot;
+        private final int refSlot;
 
-        return false;
+        private MutableLocal(HandlerParameter parameter, int local, int poolSlot, int refSlot) {
+            this.parameter = parameter;
+            this.local = local;
+            this.poolSlot = poolSlot;
+            this.refSlot = refSlot;
+        }
+    }
+
+    /**
+     * The state of resolving @Arg and @Local parameters during one call to {@link #inject(Target, InjectionNode)}
+     */
+    private static final class LocalsLookup {
+        /**
+         * The time spent resolving locals, only used for metrics
+         */
+        private long resolutionNanos = 0;
     }
 }
@@ -0,0 +1,27 @@
+package dev.cbyrne.betterinject.injector;
+
+import dev.cbyrne.betterinject.annotations.Memoize;
+import dev.cbyrne.betterinject.memoize.Eviction;
+import org.objectweb.asm.tree.AnnotationNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.spongepowered.asm.mixin.injection.code.Injector;
+import org.spongepowered.asm.mixin.injection.struct.InjectionInfo;
+import org.spongepowered.asm.mixin.transformer.MixinTargetContext;
+import org.spongepowered.asm.util.Annotations;
+
+@InjectionInfo.AnnotationType(Memoize.class)
+@InjectionInfo.HandlerPrefix("memoize")
+public class MemoizeInjectionInfo extends InjectionInfo {
+    public MemoizeInjectionInfo(MixinTargetContext mixin, MethodNode method, AnnotationNode annotation) {
+        super(mixin, method, annotation);
+    }
+
+    @Override
+    protected Injector parseInjector(AnnotationNode memoizeAnnotation) {
+        boolean print = Annotations.getValue(memoizeAnnotation, "print", Boolean.FALSE);
+        int maxSize = Annotations.getValue(memoizeAnnotation, "maxSize", 1024);
+        Eviction eviction = Annotations.getValue(memoizeAnnotation, "eviction", Eviction.class, Eviction.LRU);
+
+        return new MemoizeInjector(this, print, maxSize, eviction);
+    }
+}
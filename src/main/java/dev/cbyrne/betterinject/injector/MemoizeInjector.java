@@ -0,0 +1,337 @@
+package dev.cbyrne.betterinject.injector;
+
+import dev.cbyrne.betterinject.helpers.CallbackInfoHelper;
+import dev.cbyrne.betterinject.helpers.LocalSlotPlanner;
+import dev.cbyrne.betterinject.helpers.LocalsIndex;
+import dev.cbyrne.betterinject.helpers.Memoization;
+import dev.cbyrne.betterinject.hooks.HookDenyList;
+import dev.cbyrne.betterinject.injector.signature.HandlerParameter;
+import dev.cbyrne.betterinject.injector.signature.HandlerSignature;
+import dev.cbyrne.betterinject.memoize.Eviction;
+import dev.cbyrne.betterinject.memoize.MemoCache;
+import dev.cbyrne.betterinject.memoize.MemoKey;
+import dev.cbyrne.betterinject.utils.BytecodeUtils;
+import dev.cbyrne.betterinject.utils.CallbackInfoUtils;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.*;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfoReturnable;
+import org.spongepowered.asm.mixin.injection.code.Injector;
+import org.spongepowered.asm.mixin.injection.struct.InjectionInfo;
+import org.spongepowered.asm.mixin.injection.struct.InjectionNodes.InjectionNode;
+import org.spongepowered.asm.mixin.injection.struct.Target;
+import org.spongepowered.asm.mixin.injection.throwables.InjectionError;
+import org.spongepowered.asm.util.Bytecode;
+import org.spongepowered.asm.util.Constants;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.spongepowered.asm.mixin.injection.modify.LocalVariableDiscriminator.Context;
+
+/**
+ * Caches the values returned by a target in a {@link MemoCache}, see {@link dev.cbyrne.betterinject.annotations.Memoize}.
+ * <p/>
+ * The values are stored in CallbackInfoReturnables, so a cached value is returned in the same way as a cancelled
+ * CallbackInfoReturnable's.
+ * <pre>
+ * long key = ...; // or Object key = this; or Object key = MemoKey.of(new Object[] { this, x, z });
+ * CallbackInfoReturnable cached = betterinject$memo$handler$method$0.get(key);
+ * if (cached != null) {
+ *     return cached.getReturnValue{X}();
+ * }
+ * ...
+ * betterinject$memo$handler$method$0.put(key, new CallbackInfoReturnable{X}("method", false, value));
+ * return value;
+ * </pre>
+ */
+public class MemoizeInjector extends Injector {
+    private static final String CACHE = Type.getInternalName(MemoCache.class);
+    private static final String RETURNABLE_DESCRIPTOR = Type.getDescriptor(CallbackInfoReturnable.class);
+    private static final Type OBJECT_TYPE = Type.getType(Object.class);
+
+    private final boolean print;
+    private final int maxSize;
+    private final Eviction eviction;
+    private final HandlerSignature signature;
+
+    /**
+     * If this handler is in the {@link HookDenyList}, in which case the target is not memoized
+     */
+    private final boolean isDenied;
+
+    public MemoizeInjector(InjectionInfo info, boolean print, int maxSize, Eviction eviction) {
+        super(info, "@Memoize");
+
+        this.print = print;
+        this.maxSize = maxSize;
+        this.eviction = eviction;
+        this.signature = HandlerSignature.of(this.methodNode, this.methodArgs);
+        this.isDenied = HookDenyList.isDenied(info.getContext().getMixin().getClassName() + "::" + this.methodNode.name);
+    }
+
+    @Override
+    protected void inject(Target target, InjectionNode node) {
+        this.checkMemoizeSupported(target, node);
+
+        if (this.isDenied) {
+            Injector.logger.debug("{} is not injected into {}, as it is in the deny-list", this, target);
+
+            // Nothing calls invokeHandler for this node, but it still counts towards require and expect
+            this.info.addCallbackInvocation(this.methodNode);
+            return;
+        }
+
+        // The key is resolved and stored once per target, at its start
+        Memoization memoization = Memoization.get(target, this.methodNode);
+        if (memoization == null) {
+            memoization = this.injectLookup(target);
+        }
+
+        this.injectStore(target, node, memoization);
+
+        // The handler is never called, but each value stored counts towards require and expect
+        this.info.addCallbackInvocation(this.methodNode);
+
+        if (print) {
+            Bytecode.printMethod(target.method);
+        }
+    }
+
+    private void checkMemoizeSupported(Target target, InjectionNode node) {
+        AbstractInsnNode insn = node.getCurrentTarget();
+        String reason = null;
+
+        if (!Memoization.isSupported(target)) {
+            reason = "target " + target.method.name + " is a constructor, returns void, or is in an interface";
+        } else if (!(insn instanceof InsnNode) || insn.getOpcode() < Opcodes.IRETURN || insn.getOpcode() >= Opcodes.RETURN) {
+            reason = "it is not injected at a RETURN";
+        } else if (this.maxSize < 1) {
+            reason = "the maxSize must be at least 1";
+        } else if (!this.returnType.equals(Type.VOID_TYPE)) {
+            reason = "it does not return void";
+        } else {
+            for (HandlerParameter parameter : this.signature.getParameters()) {
+                if (parameter.getKind() != HandlerParameter.Kind.ARG) {
+                    reason = "parameter " + parameter.getIndex() + " is not annotated with @Arg";
+                    break;
+                }
+            }
+        }
+
+        if (reason == null) {
+            return;
+        }
+
+        String message = "Handler " + methodNode.name + " can not memoize " + target.method.name + ", as " + reason;
+        Injector.logger.error("Injection failure, @Memoize must be at a RETURN of a non-void method, with only @Arg parameters.", message);
+
+        throw new InjectionError(message);
+    }
+
+    /**
+     * Creates the cache, and inserts the key and the cache lookup at the start of the target.
+     */
+    private Memoization injectLookup(Target target) {
+        LocalsIndex.forTarget(target).clearIfChanged();
+
+        List<Type> keyTypes = new ArrayList<>();
+        List<Integer> keySlots = new ArrayList<>();
+        this.findKeyArguments(target, keyTypes, keySlots);
+
+        Type keyType = isLongKey(keyTypes) ? Type.LONG_TYPE : OBJECT_TYPE;
+        Memoization memoization = Memoization.create(target, this.methodNode, keyType, this.maxSize, this.eviction);
+
+        InsnList instructions = new InsnList();
+
+        // key = ...;
+        this.pushKey(instructions, keyTypes, keySlots);
+        instructions.add(new VarInsnNode(keyType.getOpcode(Opcodes.ISTORE), memoization.getKeySlot()));
+
+        // CallbackInfoReturnable cached = cache.get(key);
+        memoization.pushCache(instructions);
+        instructions.add(new VarInsnNode(keyType.getOpcode(Opcodes.ILOAD), memoization.getKeySlot()));
+        instructions.add(new MethodInsnNode(
+            Opcodes.INVOKEVIRTUAL,
+            CACHE,
+            "get",
+            "(" + keyType.getDescriptor() + ")" + RETURNABLE_DESCRIPTOR,
+            false
+        ));
+
+        // if (cached != null) { return cached.getReturnValue{X}(); }
+        String callbackInfoClass = CallbackInfoUtils.callbackInfoClassName(target.returnType);
+        LabelNode notCached = new LabelNode();
+        instructions.add(new InsnNode(Opcodes.DUP));
+        instructions.add(new JumpInsnNode(Opcodes.IFNULL, notCached));
+        instructions.add(new TypeInsnNode(Opcodes.CHECKCAST, callbackInfoClass));
+        CallbackInfoHelper.returnFromCallbackInfo(instructions, target, callbackInfoClass);
+        instructions.add(notCached);
+        instructions.add(new InsnNode(Opcodes.POP));
+
+        target.insns.insert(instructions);
+        return memoization;
+    }
+
+    /**
+     * Stores the value being returned in the cache.
+     */
+    private void injectStore(Target target, InjectionNode node, Memoization memoization) {
+        String callbackInfoClass = CallbackInfoUtils.callbackInfoClassName(target.returnType);
+        int returnValueSlot = LocalSlotPlanner.forTarget(target).returnValueSlot();
+        Type keyType = memoization.getKeyType();
+
+        InsnList instructions = new InsnList();
+
+        // T value = (value on the stack);
+        instructions.add(new InsnNode(target.returnType.getSize() == 1 ? Opcodes.DUP : Opcodes.DUP2));
+        instructions.add(new VarInsnNode(target.returnType.getOpcode(Opcodes.ISTORE), returnValueSlot));
+
+        // cache.put(key, new CallbackInfoReturnable{X}("method", false, value));
+        memoization.pushCache(instructions);
+        instructions.add(new VarInsnNode(keyType.getOpcode(Opcodes.ILOAD), memoization.getKeySlot()));
+        instructions.add(new TypeInsnNode(Opcodes.NEW, callbackInfoClass));
+        instructions.add(new InsnNode(Opcodes.DUP));
+        instructions.add(new LdcInsnNode(target.method.name));
+        instructions.add(new InsnNode(Opcodes.ICONST_0));
+        instructions.add(new VarInsnNode(target.returnType.getOpcode(Opcodes.ILOAD), returnValueSlot));
+        instructions.add(new MethodInsnNode(
+            Opcodes.INVOKESPECIAL,
+            callbackInfoClass,
+            Constants.CTOR,
+            CallbackInfoUtils.constructorDescriptor(target.returnType),
+            false
+        ));
+        instructions.add(new MethodInsnNode(
+            Opcodes.INVOKEVIRTUAL,
+            CACHE,
+            "put",
+            "(" + keyType.getDescriptor() + RETURNABLE_DESCRIPTOR + ")V",
+            false
+        ));
+
+        target.insns.insertBefore(node.getCurrentTarget(), instructions);
+    }
+
+    /**
+     * Finds the arguments selected by the handler's @Arg parameters, or every argument if it has no parameters. The cache
+     * is shared by every instance of the target class, so the receiver is always part of the key if there is one.
+     */
+    private void findKeyArguments(Target target, List<Type> keyTypes, List<Integer> keySlots) {
+        if (!target.isStatic) {
+            keyTypes.add(Type.getObjectType(target.classNode.name));
+            keySlots.add(0);
+        }
+
+        if (this.signature.getParameters().isEmpty()) {
+            for (int i = 0; i < target.arguments.length; i++) {
+                keyTypes.add(target.arguments[i]);
+                keySlots.add(target.getArgIndices()[i]);
+            }
+
+            return;
+        }
+
+        AbstractInsnNode head = target.insns.getFirst();
+        for (HandlerParameter parameter : this.signature.getParameters()) {
+            Context context = LocalsIndex.forTarget(target).getContext(this.info, parameter.getType(), true, head);
+            keyTypes.add(parameter.getType());
+            keySlots.add(parameter.getDiscriminator().findLocal(context));
+        }
+    }
+
+    /**
+     * No key, a single primitive, or two ints (or smaller), can be packed in to a long key which is never boxed.
+     */
+    private static boolean isLongKey(List<Type> keyTypes) {
+        if (keyTypes.isEmpty()) {
+            return true;
+        }
+
+        if (keyTypes.size() == 1) {
+            return keyTypes.get(0).getSort() < Type.ARRAY;
+        }
+
+        return keyTypes.size() == 2 && isIntLike(keyTypes.get(0)) && isIntLike(keyTypes.get(1));
+    }
+
+    private static boolean isIntLike(Type type) {
+        return type.getSort() >= Type.BOOLEAN && type.getSort() <= Type.INT;
+    }
+
+    /**
+     * Pushes the key, either a long, or an Object (the argument itself, or a {@link MemoKey}).
+     */
+    private void pushKey(InsnList instructions, List<Type> keyTypes, List<Integer> keySlots) {
+        if (keyTypes.isEmpty()) {
+            // There is only one possible key
+            instructions.add(new InsnNode(Opcodes.LCONST_0));
+            return;
+        }
+
+        if (isLongKey(keyTypes)) {
+            this.pushLongBits(instructions, keyTypes.get(0), keySlots.get(0));
+
+            if (keyTypes.size() == 2) {
+                // (long) a << 32 | (b & 0xFFFFFFFFL)
+                instructions.add(new IntInsnNode(Opcodes.BIPUSH, 32));
+                instructions.add(new InsnNode(Opcodes.LSHL));
+                this.pushLongBits(instructions, keyTypes.get(1), keySlots.get(1));
+                instructions.add(new LdcInsnNode(0xFFFFFFFFL));
+                instructions.add(new InsnNode(Opcodes.LAND));
+                instructions.add(new InsnNode(Opcodes.LOR));
+            }
+
+            return;
+        }
+
+        if (keyTypes.size() == 1) {
+            instructions.add(new VarInsnNode(Opcodes.ALOAD, keySlots.get(0)));
+            return;
+        }
+
+        // MemoKey.of(new Object[] { a, b, ... })
+        instructions.add(BytecodeUtils.pushInt(keyTypes.size()));
+        instructions.add(new TypeInsnNode(Opcodes.ANEWARRAY, OBJECT_TYPE.getInternalName()));
+        for (int i = 0; i < keyTypes.size(); i++) {
+            Type type = keyTypes.get(i);
+            instructions.add(new InsnNode(Opcodes.DUP));
+            instructions.add(BytecodeUtils.pushInt(i));
+            instructions.add(new VarInsnNode(type.getOpcode(Opcodes.ILOAD), keySlots.get(i)));
+            if (type.getSort() < Type.ARRAY) {
+                instructions.add(BytecodeUtils.box(type));
+            }
+            instructions.add(new InsnNode(Opcodes.AASTORE));
+        }
+
+        instructions.add(new MethodInsnNode(
+            Opcodes.INVOKESTATIC,
+            Type.getInternalName(MemoKey.class),
+            "of",
+            "([Ljava/lang/Object;)Ljava/lang/Object;",
+            false
+        ));
+    }
+
+    /**
+     * Pushes a primitive as a long, floats and doubles are converted to their bits so that they compare like equals().
+     */
+    private void pushLongBits(InsnList instructions, Type type, int slot) {
+        instructions.add(new VarInsnNode(type.getOpcode(Opcodes.ILOAD), slot));
+
+        switch (type.getSort()) {
+            case Type.LONG:
+                break;
+            case Type.DOUBLE:
+                instructions.add(new MethodInsnNode(Opcodes.INVOKESTATIC, "java/lang/Double", "doubleToLongBits", "(D)J", false));
+                break;
+            case Type.FLOAT:
+                instructions.add(new MethodInsnNode(Opcodes.INVOKESTATIC, "java/lang/Float", "floatToIntBits", "(F)I", false));
+                instructions.add(new InsnNode(Opcodes.I2L));
+                break;
+            default:
+                instructions.add(new InsnNode(Opcodes.I2L));
+                break;
+        }
+    }
+}
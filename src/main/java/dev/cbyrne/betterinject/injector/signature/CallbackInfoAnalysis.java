@@ -0,0 +1,193 @@
+package dev.cbyrne.betterinject.injector.signature;
+
+import dev.cbyrne.betterinject.utils.CallbackInfoUtils;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.*;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Finds out how a handler uses its CallbackInfo, so that we can avoid creating one when it isn't needed.
+ * <p/>
+ * This can be disabled by setting the {@value #ENABLED_PROPERTY} system property to false.
+ */
+public class CallbackInfoAnalysis {
+    public static final String ENABLED_PROPERTY = "betterinject.callbackInfoAnalysis";
+
+    private static final boolean ENABLED = !"false".equals(System.getProperty(ENABLED_PROPERTY));
+    private static final String FLAG_HANDLER_SUFFIX = "$betterinject$cancellationFlag";
+
+    public enum Usage {
+        /**
+         * The CallbackInfo is never loaded, so null can be passed instead
+         */
+        UNUSED,
+
+        /**
+         * The CallbackInfo is only used to call cancel(), so it can be replaced with a boolean.
+         * <p/>
+         * isCancelled() is not included, as it can observe a cancel() by another handler sharing the same CallbackInfo,
+         * which a boolean local to this handler could not.
+         */
+        CANCEL_ONLY,
+
+        /**
+         * The CallbackInfo is used in any other way
+         */
+        ESCAPES
+    }
+
+    public static Usage analyze(MethodNode handler, boolean isStatic, HandlerSignature signature) {
+        if (!ENABLED) {
+            return Usage.ESCAPES;
+        }
+
+        if (!signature.isCallbackInfoNeeded()) {
+            return Usage.UNUSED;
+        }
+
+        Set<Integer> slots = callbackInfoSlots(handler, isStatic, signature);
+        Usage usage = Usage.UNUSED;
+        for (AbstractInsnNode insn : handler.instructions) {
+            if (!(insn instanceof VarInsnNode) || !slots.contains(((VarInsnNode) insn).var)) {
+                continue;
+            }
+
+            // The CallbackInfo must only be loaded to immediately call cancel() on it
+            if (insn.getOpcode() != Opcodes.ALOAD || !isCancelCall(nextInstruction(insn))) {
+                return Usage.ESCAPES;
+            }
+
+            usage = Usage.CANCEL_ONLY;
+        }
+
+        return usage;
+    }
+
+    /**
+     * Finds or creates a copy of a {@link Usage#CANCEL_ONLY} handler which returns true if it would have cancelled,
+     * instead of cancelling its CallbackInfo. The CallbackInfo parameters are kept, and should be passed null.
+     * <pre>
+     * private void handler(CallbackInfo ci) {        private boolean handler$betterinject$cancellationFlag(CallbackInfo ci) {
+     *     if (shouldCancel()) {                          boolean cancelled = false;
+     *         ci.cancel();                     ->        if (shouldCancel()) {
+     *     }                                                  cancelled = true;
+     * }                                                  }
+     *                                                    return cancelled;
+     *                                                }
+     * </pre>
+     */
+    public static MethodNode getOrCreateCancellationFlagHandler(
+        ClassNode classNode,
+        MethodNode handler,
+        boolean isStatic,
+        HandlerSignature signature
+    ) {
+        String name = handler.name + FLAG_HANDLER_SUFFIX;
+        String descriptor = Type.getMethodDescriptor(Type.BOOLEAN_TYPE, Type.getArgumentTypes(handler.desc));
+        for (MethodNode method : classNode.methods) {
+            if (method.name.equals(name) && method.desc.equals(descriptor)) {
+                return method;
+            }
+        }
+
+        MethodNode copy = new MethodNode(
+            handler.access | Opcodes.ACC_SYNTHETIC,
+            name,
+            descriptor,
+            null,
+            handler.exceptions.toArray(new String[0])
+        );
+
+        Map<LabelNode, LabelNode> labels = new HashMap<>();
+        for (AbstractInsnNode insn : handler.instructions) {
+            if (insn instanceof LabelNode) {
+                labels.put((LabelNode) insn, new LabelNode());
+            }
+        }
+
+        Set<Integer> slots = callbackInfoSlots(handler, isStatic, signature);
+        int flag = handler.maxLocals;
+        boolean loadedCallbackInfo = false;
+
+        // boolean cancelled = false;
+        copy.instructions.add(new InsnNode(Opcodes.ICONST_0));
+        copy.instructions.add(new VarInsnNode(Opcodes.ISTORE, flag));
+
+        for (AbstractInsnNode insn : handler.instructions) {
+            if (insn instanceof FrameNode) {
+                // The frames are recomputed when the class is written
+                continue;
+            }
+
+            if (insn instanceof VarInsnNode && slots.contains(((VarInsnNode) insn).var)) {
+                loadedCallbackInfo = true;
+            } else if (loadedCallbackInfo && isCancelCall(insn)) {
+                // cancelled = true;
+                loadedCallbackInfo = false;
+                copy.instructions.add(new InsnNode(Opcodes.ICONST_1));
+                copy.instructions.add(new VarInsnNode(Opcodes.ISTORE, flag));
+            } else if (insn.getOpcode() == Opcodes.RETURN) {
+                // return cancelled;
+                copy.instructions.add(new VarInsnNode(Opcodes.ILOAD, flag));
+                copy.instructions.add(new InsnNode(Opcodes.IRETURN));
+            } else {
+                copy.instructions.add(insn.clone(labels));
+            }
+        }
+
+        for (TryCatchBlockNode block : handler.tryCatchBlocks) {
+            copy.tryCatchBlocks.add(new TryCatchBlockNode(labels.get(block.start), labels.get(block.end), labels.get(block.handler), block.type));
+        }
+
+        copy.maxLocals = handler.maxLocals + 1;
+        copy.maxStack = Math.max(handler.maxStack, 1);
+        classNode.methods.add(copy);
+        return copy;
+    }
+
+    private static Set<Integer> callbackInfoSlots(MethodNode handler, boolean isStatic, HandlerSignature signature) {
+        Type[] argumentTypes = Type.getArgumentTypes(handler.desc);
+        Set<Integer> slots = new HashSet<>();
+
+        int slot = isStatic ? 0 : 1;
+        for (int i = 0; i < argumentTypes.length; i++) {
+            if (signature.getParameters().get(i).getKind() == HandlerParameter.Kind.CALLBACK_INFO) {
+                slots.add(slot);
+            }
+
+            slot += argumentTypes[i].getSize();
+        }
+
+        return slots;
+    }
+
+    private static boolean isCancelCall(AbstractInsnNode insn) {
+        if (!(insn instanceof MethodInsnNode) || insn.getOpcode() != Opcodes.INVOKEVIRTUAL) {
+            return false;
+        }
+
+        MethodInsnNode method = (MethodInsnNode) insn;
+        if (!CallbackInfoUtils.typeIsCallbackInfo(Type.getObjectType(method.owner))) {
+            return false;
+        }
+
+        return method.name.equals("cancel") && method.desc.equals("()V");
+    }
+
+    /**
+     * The next instruction which is not a label, line number or frame
+     */
+    private static AbstractInsnNode nextInstruction(AbstractInsnNode insn) {
+        AbstractInsnNode next = insn.getNext();
+        while (next != null && next.getOpcode() == -1) {
+            next = next.getNext();
+        }
+
+        return next;
+    }
+}
@@ -0,0 +1,119 @@
+package dev.cbyrne.betterinject.injector.signature;
+
+import dev.cbyrne.betterinject.injector.strategy.ArgumentHandlingStrategy;
+import dev.cbyrne.betterinject.utils.LogUtils;
+import org.spongepowered.asm.service.MixinService;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The handler metadata generated at compile time by {@link dev.cbyrne.betterinject.BetterInjectAbstractProcessor}.
+ * <p/>
+ * There is one resource per mixin class, with one line per handler:
+ * <pre>handlerName(descriptor)V=STRICT:ARG,LOCAL,CALLBACK_INFO</pre>
+ */
+public class HandlerIndex {
+    public static final String RESOURCE_PREFIX = "META-INF/betterinject/";
+    public static final String RESOURCE_SUFFIX = ".index";
+
+    /**
+     * The loaded indexes, by mixin class name. Mixins without an index have an empty map.
+     */
+    private static final Map<String, Map<String, Entry>> INDEXES = new ConcurrentHashMap<>();
+
+    /**
+     * The name of the index resource for a mixin class, i.e. "META-INF/betterinject/my/mod/MyMixin.index"
+     */
+    public static String resourceName(String mixinClassName) {
+        return RESOURCE_PREFIX + mixinClassName.replace('.', '/') + RESOURCE_SUFFIX;
+    }
+
+    public static String format(ArgumentHandlingStrategy strategy, List<HandlerParameter.Kind> kinds) {
+        StringBuilder builder = new StringBuilder(strategy.name()).append(':');
+        for (int i = 0; i < kinds.size(); i++) {
+            if (i > 0) {
+                builder.append(',');
+            }
+
+            builder.append(kinds.get(i).name());
+        }
+
+        return builder.toString();
+    }
+
+    /**
+     * Finds the generated entry for a handler.
+     *
+     * @param mixinClassName The binary name of the mixin class, i.e. "my.mod.MyMixin"
+     * @param handler        The handler's name and descriptor
+     * @return The entry, or null if the mixin was not processed at compile time
+     */
+    public static Entry lookup(String mixinClassName, String handler) {
+        return INDEXES.computeIfAbsent(mixinClassName, HandlerIndex::load).get(handler);
+    }
+
+    private static Map<String, Entry> load(String mixinClassName) {
+        InputStream stream = MixinService.getService().getResourceAsStream(resourceName(mixinClassName));
+        if (stream == null) {
+            return Collections.emptyMap();
+        }
+
+        Map<String, Entry> entries = new HashMap<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int separator = line.lastIndexOf('=');
+                if (separator == -1) {
+                    continue;
+                }
+
+                entries.put(line.substring(0, separator), parse(line.substring(separator + 1)));
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            // The index is only an optimization, we can always work this out from the handler itself
+            LogUtils.LOGGER.warn("Failed to read the handler index for {}, ignoring it", mixinClassName, e);
+            return Collections.emptyMap();
+        }
+
+        return entries;
+    }
+
+    private static Entry parse(String value) {
+        int separator = value.indexOf(':');
+        ArgumentHandlingStrategy strategy = ArgumentHandlingStrategy.valueOf(value.substring(0, separator));
+
+        List<HandlerParameter.Kind> kinds = new ArrayList<>();
+        String parameters = value.substring(separator + 1);
+        if (!parameters.isEmpty()) {
+            for (String kind : parameters.split(",")) {
+                kinds.add(HandlerParameter.Kind.valueOf(kind));
+            }
+        }
+
+        return new Entry(strategy, kinds);
+    }
+
+    public static class Entry {
+        private final ArgumentHandlingStrategy strategy;
+        private final List<HandlerParameter.Kind> kinds;
+
+        private Entry(ArgumentHandlingStrategy strategy, List<HandlerParameter.Kind> kinds) {
+            this.strategy = strategy;
+            this.kinds = Collections.unmodifiableList(kinds);
+        }
+
+        public ArgumentHandlingStrategy getStrategy() {
+            return this.strategy;
+        }
+
+        public List<HandlerParameter.Kind> getKinds() {
+            return this.kinds;
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package dev.cbyrne.betterinject.injector.signature;
+
+import dev.cbyrne.betterinject.annotations.Arg;
+import dev.cbyrne.betterinject.annotations.Local;
+import dev.cbyrne.betterinject.annotations.ReturnValue;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.AnnotationNode;
+import org.spongepowered.asm.mixin.injection.modify.LocalVariableDiscriminator;
+import org.spongepowered.asm.util.Annotations;
+
+/**
+ * A single parameter on a handler method, and how it should be loaded.
+ *
+ * @see HandlerSignature
+ */
+public class HandlerParameter {
+    /**
+     * Where the value of a parameter comes from.
+     */
+    public enum Kind {
+        /**
+         * A CallbackInfo or CallbackInfoReturnable
+         */
+        CALLBACK_INFO,
+
+        /**
+         * An argument of the target, annotated with {@link Arg}
+         */
+        ARG,
+
+        /**
+         * A local variable of the target, annotated with {@link Local}
+         */
+        LOCAL,
+
+        /**
+         * The value being returned by the target, annotated with {@link ReturnValue}
+         */
+        RETURN_VALUE,
+
+        /**
+         * An argument of the target at the same position, only used in
+         * {@link dev.cbyrne.betterinject.injector.strategy.ArgumentHandlingStrategy#STRICT}
+         */
+        POSITIONAL
+    }
+
+    private final int index;
+    private final Kind kind;
+    private final Type type;
+    private final AnnotationNode annotation;
+    private final LocalVariableDiscriminator discriminator;
+    private final boolean isMutable;
+    private final Type localType;
+
+    HandlerParameter(int index, Kind kind, Type type, AnnotationNode annotation) {
+        this(index, kind, type, annotation, type);
+    }
+
+    HandlerParameter(int index, Kind kind, Type type, AnnotationNode annotation, Type localType) {
+        this.index = index;
+        this.kind = kind;
+        this.type = type;
+        this.annotation = annotation;
+        this.discriminator = kind == Kind.ARG || kind == Kind.LOCAL ? LocalVariableDiscriminator.parse(annotation) : null;
+        this.isMutable = kind == Kind.LOCAL && Annotations.getValue(annotation, "mutable", Boolean.FALSE);
+        this.localType = localType;
+    }
+
+    /**
+     * The index of this parameter on the handler
+     */
+    public int getIndex() {
+        return this.index;
+    }
+
+    public Kind getKind() {
+        return this.kind;
+    }
+
+    public Type getType() {
+        return this.type;
+    }
+
+    /**
+     * The {@link Arg}, {@link Local} or {@link ReturnValue} annotation, or null if this parameter is not annotated
+     */
+    public AnnotationNode getAnnotation() {
+        return this.annotation;
+    }
+
+    /**
+     * The discriminator parsed from {@link #getAnnotation()}, or null if this parameter is not annotated
+     */
+    public LocalVariableDiscriminator getDiscriminator() {
+        return this.discriminator;
+    }
+
+    /**
+     * The xLOAD opcode for this parameter's type
+     */
+    public int getLoadOpcode() {
+        return this.type.getOpcode(Opcodes.ILOAD);
+    }
+
+    /**
+     * If this parameter is a reference to a local, which is written back after the handler returns
+     */
+    public boolean isMutable() {
+        return this.isMutable;
+    }
+
+    /**
+     * The type of the local variable to search for, this is the referenced type for mutable locals, or null if the
+     * parameter is not a valid reference.
+     */
+    public Type getLocalType() {
+        return this.localType;
+    }
+
+    /**
+     * The xLOAD opcode for the local variable's type
+     */
+    public int getLocalLoadOpcode() {
+        return this.localType.getOpcode(Opcodes.ILOAD);
+    }
+
+    /**
+     * If the value should only be searched for in the target's arguments
+     */
+    public boolean isArgumentsOnly() {
+        return this.kind == Kind.ARG;
+    }
+}
@@ -0,0 +1,186 @@
+package dev.cbyrne.betterinject.injector.signature;
+
+import dev.cbyrne.betterinject.annotations.Arg;
+import dev.cbyrne.betterinject.annotations.Local;
+import dev.cbyrne.betterinject.annotations.ReturnValue;
+import dev.cbyrne.betterinject.helpers.MutableLocals;
+import dev.cbyrne.betterinject.injector.strategy.ArgumentHandlingStrategy;
+import dev.cbyrne.betterinject.utils.CallbackInfoUtils;
+import dev.cbyrne.betterinject.utils.SignatureUtils;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.AnnotationNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.spongepowered.asm.util.Annotations;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An immutable model of a handler method's parameters.
+ * <p/>
+ * This is built once per handler, so that the parameter annotations don't need to be scanned again for every
+ * injection node.
+ */
+public class HandlerSignature {
+    private final List<HandlerParameter> parameters;
+    private final ArgumentHandlingStrategy argumentStrategy;
+    private final boolean isCallbackInfoNeeded;
+    private final boolean hasReturnValue;
+    private final boolean hasMutableLocals;
+
+    private HandlerSignature(List<HandlerParameter> parameters, ArgumentHandlingStrategy argumentStrategy, boolean isCallbackInfoNeeded) {
+        this.parameters = Collections.unmodifiableList(parameters);
+        this.argumentStrategy = argumentStrategy;
+        this.isCallbackInfoNeeded = isCallbackInfoNeeded;
+
+        boolean hasReturnValue = false;
+        boolean hasMutableLocals = false;
+        for (HandlerParameter parameter : parameters) {
+            hasReturnValue |= parameter.getKind() == HandlerParameter.Kind.RETURN_VALUE;
+            hasMutableLocals |= parameter.isMutable();
+        }
+
+        this.hasReturnValue = hasReturnValue;
+        this.hasMutableLocals = hasMutableLocals;
+    }
+
+    /**
+     * Builds the signature from the index generated at compile time, only reading the annotations we know exist.
+     * If the entry does not match the handler, this falls back to {@link #of(MethodNode, Type[])}.
+     */
+    public static HandlerSignature of(MethodNode method, Type[] methodArgs, HandlerIndex.Entry entry) {
+        if (entry == null || entry.getKinds().size() != methodArgs.length) {
+            return of(method, methodArgs);
+        }
+
+        List<HandlerParameter> parameters = new ArrayList<>(methodArgs.length);
+        boolean isCallbackInfoNeeded = false;
+
+        for (int i = 0; i < methodArgs.length; i++) {
+            HandlerParameter.Kind kind = entry.getKinds().get(i);
+            AnnotationNode annotation = null;
+
+            switch (kind) {
+                case CALLBACK_INFO:
+                    isCallbackInfoNeeded = true;
+                    if (!CallbackInfoUtils.typeIsCallbackInfo(methodArgs[i])) {
+                        return of(method, methodArgs);
+                    }
+                    break;
+                case ARG:
+                    annotation = Annotations.getVisibleParameter(method, Arg.class, i);
+                    break;
+                case LOCAL:
+                    annotation = Annotations.getVisibleParameter(method, Local.class, i);
+                    break;
+                case RETURN_VALUE:
+                    annotation = Annotations.getVisibleParameter(method, ReturnValue.class, i);
+                    break;
+                case POSITIONAL:
+                    break;
+            }
+
+            // The index is out of date, work it out ourselves
+            if (kind != HandlerParameter.Kind.CALLBACK_INFO && kind != HandlerParameter.Kind.POSITIONAL && annotation == null) {
+                return of(method, methodArgs);
+            }
+
+            if (kind == HandlerParameter.Kind.LOCAL) {
+                parameters.add(local(method, i, methodArgs[i], annotation));
+            } else {
+                parameters.add(new HandlerParameter(i, kind, methodArgs[i], annotation));
+            }
+        }
+
+        return new HandlerSignature(parameters, entry.getStrategy(), isCallbackInfoNeeded);
+    }
+
+    public static HandlerSignature of(MethodNode method, Type[] methodArgs) {
+        List<HandlerParameter> parameters = new ArrayList<>(methodArgs.length);
+        boolean isCallbackInfoNeeded = false;
+        boolean allAreAnnotated = true;
+
+        for (int i = 0; i < methodArgs.length; i++) {
+            Type argumentType = methodArgs[i];
+
+            if (CallbackInfoUtils.typeIsCallbackInfo(argumentType)) {
+                parameters.add(new HandlerParameter(i, HandlerParameter.Kind.CALLBACK_INFO, argumentType, null));
+                isCallbackInfoNeeded = true;
+                continue;
+            }
+
+            AnnotationNode returnValueNode = Annotations.getVisibleParameter(method, ReturnValue.class, i);
+            if (returnValueNode != null) {
+                parameters.add(new HandlerParameter(i, HandlerParameter.Kind.RETURN_VALUE, argumentType, returnValueNode));
+                continue;
+            }
+
+            // @Arg takes priority over @Local
+            AnnotationNode argNode = Annotations.getVisibleParameter(method, Arg.class, i);
+            if (argNode != null) {
+                parameters.add(new HandlerParameter(i, HandlerParameter.Kind.ARG, argumentType, argNode));
+                continue;
+            }
+
+            AnnotationNode localNode = Annotations.getVisibleParameter(method, Local.class, i);
+            if (localNode != null) {
+                parameters.add(local(method, i, argumentType, localNode));
+                continue;
+            }
+
+            parameters.add(new HandlerParameter(i, HandlerParameter.Kind.POSITIONAL, argumentType, null));
+            allAreAnnotated = false;
+        }
+
+        // See ArgumentHandlingStrategy#fromMethod, if any parameter is not annotated, we are in strict mode
+        ArgumentHandlingStrategy strategy = allAreAnnotated ? ArgumentHandlingStrategy.LIGHT : ArgumentHandlingStrategy.STRICT;
+        return new HandlerSignature(parameters, strategy, isCallbackInfoNeeded);
+    }
+
+    /**
+     * A @Local parameter, if it is mutable the type of the local is the one held by the reference.
+     */
+    private static HandlerParameter local(MethodNode method, int index, Type type, AnnotationNode annotation) {
+        if (!Annotations.getValue(annotation, "mutable", Boolean.FALSE)) {
+            return new HandlerParameter(index, HandlerParameter.Kind.LOCAL, type, annotation);
+        }
+
+        Type localType = type.getSort() == Type.OBJECT ? MutableLocals.valueType(type) : null;
+        if (localType != null && localType.getSort() == Type.OBJECT && localType.getInternalName().equals("java/lang/Object")) {
+            // LocalRef<T>, the type of the local is T
+            localType = SignatureUtils.firstTypeArgument(method, index);
+        }
+
+        return new HandlerParameter(index, HandlerParameter.Kind.LOCAL, type, annotation, localType);
+    }
+
+    public List<HandlerParameter> getParameters() {
+        return this.parameters;
+    }
+
+    public ArgumentHandlingStrategy getArgumentStrategy() {
+        return this.argumentStrategy;
+    }
+
+    /**
+     * If any of the parameters are a CallbackInfo(Returnable)
+     */
+    public boolean isCallbackInfoNeeded() {
+        return this.isCallbackInfoNeeded;
+    }
+
+    /**
+     * If any of the parameters are annotated with @ReturnValue
+     */
+    public boolean hasReturnValue() {
+        return this.hasReturnValue;
+    }
+
+    /**
+     * If any of the parameters are annotated with @Local(mutable = true)
+     */
+    public boolean hasMutableLocals() {
+        return this.hasMutableLocals;
+    }
+}
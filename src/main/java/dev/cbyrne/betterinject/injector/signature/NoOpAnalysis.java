@@ -0,0 +1,40 @@
+package dev.cbyrne.betterinject.injector.signature;
+
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Finds handlers which provably do nothing, so that they don't need to be injected at all.
+ * <pre>
+ * public void onTick(CallbackInfo ci) {
+ * }
+ *
+ * public boolean onTick() {
+ *     return false;
+ * }
+ * </pre>
+ * A handler returning false never cancels its target, so it is a no-op as well. Anything else, including a call to an
+ * empty method, is not treated as a no-op.
+ */
+public class NoOpAnalysis {
+    public static boolean isNoOp(MethodNode handler) {
+        List<AbstractInsnNode> instructions = new ArrayList<>();
+        for (AbstractInsnNode insn : handler.instructions) {
+            // Labels, line numbers and frames are not real instructions
+            if (insn.getOpcode() != -1) {
+                instructions.add(insn);
+            }
+        }
+
+        if (instructions.size() == 1) {
+            return instructions.get(0).getOpcode() == Opcodes.RETURN;
+        }
+
+        return instructions.size() == 2
+            && instructions.get(0).getOpcode() == Opcodes.ICONST_0
+            && instructions.get(1).getOpcode() == Opcodes.IRETURN;
+    }
+}
@@ -0,0 +1,22 @@
+package dev.cbyrne.betterinject.locals;
+
+/**
+ * A reference to a float local variable, for a {@link dev.cbyrne.betterinject.annotations.Local} with
+ * {@code mutable = true}. The value is written back to the local after the handler returns.
+ * <p/>
+ * Instances are pooled and reused by {@link LocalRefPool}, so they must not be kept after the handler returns.
+ */
+public final class LocalFloatRef {
+    private float value;
+
+    LocalFloatRef() {
+    }
+
+    public float get() {
+        return this.value;
+    }
+
+    public void set(float value) {
+        this.value = value;
+    }
+}
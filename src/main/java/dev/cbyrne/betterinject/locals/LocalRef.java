@@ -0,0 +1,26 @@
+package dev.cbyrne.betterinject.locals;
+
+/**
+ * A reference to a local variable, for a {@link dev.cbyrne.betterinject.annotations.Local} with {@code mutable = true}.
+ * The value is written back to the local after the handler returns.
+ * <pre>
+ * private void handler(@Local(mutable = true) LocalRef&lt;String&gt; name) {
+ *     name.set(name.get().trim());
+ * }
+ * </pre>
+ * Instances are pooled and reused by {@link LocalRefPool}, so they must not be kept after the handler returns.
+ */
+public final class LocalRef<T> {
+    private T value;
+
+    LocalRef() {
+    }
+
+    public T get() {
+        return this.value;
+    }
+
+    public void set(T value) {
+        this.value = value;
+    }
+}
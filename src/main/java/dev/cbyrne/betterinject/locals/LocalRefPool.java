@@ -0,0 +1,157 @@
+package dev.cbyrne.betterinject.locals;
+
+import java.util.Arrays;
+
+/**
+ * The per-thread pool of references to local variables, which are passed to handlers with mutable @Local parameters.
+ * <p/>
+ * Each kind of reference is a stack, as a handler can call its own target again before its references are released.
+ * <pre>
+ * LocalRefPool pool = LocalRefPool.get();
+ * LocalIntRef ref = pool.acquireInt(local);
+ * handler(ref);
+ * local = ref.get();
+ * pool.releaseInt();
+ * </pre>
+ */
+public final class LocalRefPool {
+    private static final ThreadLocal<LocalRefPool> POOLS = ThreadLocal.withInitial(LocalRefPool::new);
+
+    private LocalIntRef[] ints = new LocalIntRef[0];
+    private LocalLongRef[] longs = new LocalLongRef[0];
+    private LocalFloatRef[] floats = new LocalFloatRef[0];
+    private LocalDoubleRef[] doubles = new LocalDoubleRef[0];
+    private LocalBooleanRef[] booleans = new LocalBooleanRef[0];
+    private LocalRef<?>[] objects = new LocalRef<?>[0];
+
+    private int intDepth;
+    private int longDepth;
+    private int floatDepth;
+    private int doubleDepth;
+    private int booleanDepth;
+    private int objectDepth;
+
+    private LocalRefPool() {
+    }
+
+    public static LocalRefPool get() {
+        return POOLS.get();
+    }
+
+    public LocalIntRef acquireInt(int value) {
+        if (this.intDepth == this.ints.length) {
+            this.ints = Arrays.copyOf(this.ints, this.ints.length + 4);
+        }
+
+        LocalIntRef ref = this.ints[this.intDepth];
+        if (ref == null) {
+            ref = this.ints[this.intDepth] = new LocalIntRef();
+        }
+
+        this.intDepth++;
+        ref.set(value);
+        return ref;
+    }
+
+    public LocalLongRef acquireLong(long value) {
+        if (this.longDepth == this.longs.length) {
+            this.longs = Arrays.copyOf(this.longs, this.longs.length + 4);
+        }
+
+        LocalLongRef ref = this.longs[this.longDepth];
+        if (ref == null) {
+            ref = this.longs[this.longDepth] = new LocalLongRef();
+        }
+
+        this.longDepth++;
+        ref.set(value);
+        return ref;
+    }
+
+    public LocalFloatRef acquireFloat(float value) {
+        if (this.floatDepth == this.floats.length) {
+            this.floats = Arrays.copyOf(this.floats, this.floats.length + 4);
+        }
+
+        LocalFloatRef ref = this.floats[this.floatDepth];
+        if (ref == null) {
+            ref = this.floats[this.floatDepth] = new LocalFloatRef();
+        }
+
+        this.floatDepth++;
+        ref.set(value);
+        return ref;
+    }
+
+    public LocalDoubleRef acquireDouble(double value) {
+        if (this.doubleDepth == this.doubles.length) {
+            this.doubles = Arrays.copyOf(this.doubles, this.doubles.length + 4);
+        }
+
+        LocalDoubleRef ref = this.doubles[this.doubleDepth];
+        if (ref == null) {
+            ref = this.doubles[this.doubleDepth] = new LocalDoubleRef();
+        }
+
+        this.doubleDepth++;
+        ref.set(value);
+        return ref;
+    }
+
+    public LocalBooleanRef acquireBoolean(boolean value) {
+        if (this.booleanDepth == this.booleans.length) {
+            this.booleans = Arrays.copyOf(this.booleans, this.booleans.length + 4);
+        }
+
+        LocalBooleanRef ref = this.booleans[this.booleanDepth];
+        if (ref == null) {
+            ref = this.booleans[this.booleanDepth] = new LocalBooleanRef();
+        }
+
+        this.booleanDepth++;
+        ref.set(value);
+        return ref;
+    }
+
+    @SuppressWarnings("unchecked")
+    public LocalRef<Object> acquireObject(Object value) {
+        if (this.objectDepth == this.objects.length) {
+            this.objects = Arrays.copyOf(this.objects, this.objects.length + 4);
+        }
+
+        LocalRef<Object> ref = (LocalRef<Object>) this.objects[this.objectDepth];
+        if (ref == null) {
+            ref = new LocalRef<>();
+            this.objects[this.objectDepth] = ref;
+        }
+
+        this.objectDepth++;
+        ref.set(value);
+        return ref;
+    }
+
+    public void releaseInt() {
+        this.intDepth--;
+    }
+
+    public void releaseLong() {
+        this.longDepth--;
+    }
+
+    public void releaseFloat() {
+        this.floatDepth--;
+    }
+
+    public void releaseDouble() {
+        this.doubleDepth--;
+    }
+
+    public void releaseBoolean() {
+        this.booleanDepth--;
+    }
+
+    public void releaseObject() {
+        // Don't keep the value alive while the reference is in the pool
+        this.objects[--this.objectDepth].set(null);
+    }
+}
@@ -0,0 +1,16 @@
+package dev.cbyrne.betterinject.memoize;
+
+/**
+ * Which entry a full {@link MemoCache} removes to make space for a new one.
+ */
+public enum Eviction {
+    /**
+     * The entry which was least recently returned or stored
+     */
+    LRU,
+
+    /**
+     * The entry which was stored first, hits don't change the order. This is cheaper than LRU, as a hit never writes.
+     */
+    FIFO
+}
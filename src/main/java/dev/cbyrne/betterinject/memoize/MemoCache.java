@@ -0,0 +1,250 @@
+package dev.cbyrne.betterinject.memoize;
+
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfoReturnable;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded, concurrent cache of the values returned by a memoized target, see {@link dev.cbyrne.betterinject.annotations.Memoize}.
+ * <p/>
+ * Values are held in CallbackInfoReturnables, so that primitive values are returned by the target without unboxing
+ * them. Targets memoized on a single primitive argument (or two ints) use the {@code long} methods, so the key is never
+ * boxed either.
+ * <p/>
+ * The cache is split in to segments which are locked separately, each segment holds an equal share of the entries.
+ */
+public final class MemoCache {
+    private static final int MAX_SEGMENTS = 16;
+    private static final Object NULL_KEY = new Object();
+
+    private final Segment[] segments;
+    private final int segmentShift;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    private MemoCache(int maxSize, Eviction eviction) {
+        int segmentCount = Math.min(MAX_SEGMENTS, Integer.highestOneBit(Math.max(1, maxSize / 4)));
+        int segmentSize = Math.max(1, (maxSize + segmentCount - 1) / segmentCount);
+
+        this.segments = new Segment[segmentCount];
+        this.segmentShift = 32 - Integer.numberOfTrailingZeros(segmentCount);
+        for (int i = 0; i < segmentCount; i++) {
+            this.segments[i] = new Segment(segmentSize, eviction == Eviction.LRU);
+        }
+    }
+
+    /**
+     * Called from the static initializer of a memoized target's class.
+     */
+    public static MemoCache create(int maxSize, String eviction) {
+        return new MemoCache(maxSize, Eviction.valueOf(eviction));
+    }
+
+    /**
+     * @return The CallbackInfoReturnable holding the cached value, or null if it is not cached
+     */
+    public CallbackInfoReturnable<?> get(long key) {
+        int hash = hash(key);
+        return this.count(this.segmentFor(hash).get(hash, key, null));
+    }
+
+    /**
+     * @return The CallbackInfoReturnable holding the cached value, or null if it is not cached
+     */
+    public CallbackInfoReturnable<?> get(Object key) {
+        if (key == null) {
+            key = NULL_KEY;
+        }
+
+        int hash = hash(key.hashCode());
+        return this.count(this.segmentFor(hash).get(hash, 0, key));
+    }
+
+    public void put(long key, CallbackInfoReturnable<?> value) {
+        int hash = hash(key);
+        this.segmentFor(hash).put(hash, key, null, value);
+    }
+
+    public void put(Object key, CallbackInfoReturnable<?> value) {
+        if (key == null) {
+            key = NULL_KEY;
+        }
+
+        int hash = hash(key.hashCode());
+        this.segmentFor(hash).put(hash, 0, key, value);
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment segment : this.segments) {
+            size += segment.size();
+        }
+
+        return size;
+    }
+
+    public long getHitCount() {
+        return this.hits.sum();
+    }
+
+    public long getMissCount() {
+        return this.misses.sum();
+    }
+
+    public void clear() {
+        for (Segment segment : this.segments) {
+            segment.clear();
+        }
+    }
+
+    private CallbackInfoReturnable<?> count(CallbackInfoReturnable<?> value) {
+        (value != null ? this.hits : this.misses).increment();
+        return value;
+    }
+
+    private Segment segmentFor(int hash) {
+        return this.segments.length == 1 ? this.segments[0] : this.segments[hash >>> this.segmentShift];
+    }
+
+    private static int hash(long key) {
+        return hash((int) (key ^ (key >>> 32)));
+    }
+
+    private static int hash(int hash) {
+        hash *= 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * A hash table with its entries linked in eviction order, the eldest entry is after {@link #head}.
+     */
+    private static final class Segment {
+        private final int capacity;
+        private final boolean accessOrder;
+        private final Entry[] table;
+        private final Entry head = new Entry(0, 0, null, null);
+        private int size = 0;
+
+        private Segment(int capacity, boolean accessOrder) {
+            this.capacity = capacity;
+            this.accessOrder = accessOrder;
+            this.table = new Entry[Integer.highestOneBit(Math.max(1, capacity * 4 / 3)) << 1];
+            this.head.before = this.head.after = this.head;
+        }
+
+        private synchronized CallbackInfoReturnable<?> get(int hash, long key, Object objectKey) {
+            Entry entry = this.find(hash, key, objectKey);
+            if (entry == null) {
+                return null;
+            }
+
+            if (this.accessOrder) {
+                entry.unlink();
+                entry.linkBefore(this.head);
+            }
+
+            return entry.value;
+        }
+
+        private synchronized void put(int hash, long key, Object objectKey, CallbackInfoReturnable<?> value) {
+            Entry entry = this.find(hash, key, objectKey);
+            if (entry != null) {
+                entry.value = value;
+                if (this.accessOrder) {
+                    entry.unlink();
+                    entry.linkBefore(this.head);
+                }
+
+                return;
+            }
+
+            if (this.size == this.capacity) {
+                this.remove(this.head.after);
+            }
+
+            int index = hash & (this.table.length - 1);
+            entry = new Entry(hash, key, objectKey, value);
+            entry.next = this.table[index];
+            this.table[index] = entry;
+            entry.linkBefore(this.head);
+            this.size++;
+        }
+
+        private synchronized int size() {
+            return this.size;
+        }
+
+        private synchronized void clear() {
+            Arrays.fill(this.table, null);
+            this.head.before = this.head.after = this.head;
+            this.size = 0;
+        }
+
+        private Entry find(int hash, long key, Object objectKey) {
+            for (Entry entry = this.table[hash & (this.table.length - 1)]; entry != null; entry = entry.next) {
+                if (entry.hash == hash && (objectKey == null ? entry.objectKey == null && entry.key == key : objectKey.equals(entry.objectKey))) {
+                    return entry;
+                }
+            }
+
+            return null;
+        }
+
+        private void remove(Entry removed) {
+            int index = removed.hash & (this.table.length - 1);
+            Entry previous = null;
+            for (Entry entry = this.table[index]; entry != null; previous = entry, entry = entry.next) {
+                if (entry == removed) {
+                    if (previous == null) {
+                        this.table[index] = entry.next;
+                    } else {
+                        previous.next = entry.next;
+                    }
+
+                    break;
+                }
+            }
+
+            removed.unlink();
+            this.size--;
+        }
+    }
+
+    private static final class Entry {
+        private final int hash;
+        private final long key;
+        private final Object objectKey;
+        private CallbackInfoReturnable<?> value;
+
+        /**
+         * The next entry in the same bucket
+         */
+        private Entry next;
+
+        /**
+         * The neighbouring entries in eviction order
+         */
+        private Entry before;
+        private Entry after;
+
+        private Entry(int hash, long key, Object objectKey, CallbackInfoReturnable<?> value) {
+            this.hash = hash;
+            this.key = key;
+            this.objectKey = objectKey;
+            this.value = value;
+        }
+
+        private void unlink() {
+            this.before.after = this.after;
+            this.after.before = this.before;
+        }
+
+        private void linkBefore(Entry entry) {
+            this.after = entry;
+            this.before = entry.before;
+            entry.before.after = this;
+            entry.before = this;
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package dev.cbyrne.betterinject.memoize;
+
+import java.util.Arrays;
+
+/**
+ * The key of a {@link MemoCache} for targets which are memoized on more than one argument, or on arguments which can't
+ * be packed in to a long.
+ */
+public final class MemoKey {
+    private final Object[] values;
+    private final int hash;
+
+    private MemoKey(Object[] values) {
+        this.values = values;
+        this.hash = Arrays.hashCode(values);
+    }
+
+    public static Object of(Object[] values) {
+        return new MemoKey(values);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof MemoKey && this.hash == ((MemoKey) other).hash && Arrays.equals(this.values, ((MemoKey) other).values);
+    }
+
+    @Override
+    public int hashCode() {
+        return this.hash;
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(this.values);
+    }
+}
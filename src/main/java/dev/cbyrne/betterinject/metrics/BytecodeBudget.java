@@ -0,0 +1,142 @@
+package dev.cbyrne.betterinject.metrics;
+
+import org.objectweb.asm.tree.MethodNode;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Tracks how much bytecode BetterInject's handlers add to each target, and reports targets which grow past one of
+ * HotSpot's JIT limits because of them:
+ * <ul>
+ *     <li>MaxInlineSize (35 bytes), the largest method which is inlined if it is not hot</li>
+ *     <li>FreqInlineSize (325 bytes), the largest hot method which is inlined</li>
+ *     <li>HugeMethodLimit (8000 bytes), methods larger than this are not compiled at all</li>
+ * </ul>
+ * This is disabled unless the {@value #MODE_PROPERTY} system property is {@code warn}, which logs a warning, or
+ * {@code fail}, which fails the injection.
+ */
+public class BytecodeBudget {
+    public static final String MODE_PROPERTY = "betterinject.budget";
+
+    private static final String[] LIMIT_NAMES = {"MaxInlineSize", "FreqInlineSize", "HugeMethodLimit"};
+    private static final int[] LIMITS = {35, 325, 8000};
+
+    private static final BytecodeBudget INSTANCE = new BytecodeBudget(System.getProperty(MODE_PROPERTY, ""));
+
+    /**
+     * The budget for each target method. Weak, as we don't want to keep target classes alive after they are written.
+     */
+    private final Map<MethodNode, TargetBudget> targets = Collections.synchronizedMap(new WeakHashMap<>());
+    private final boolean enabled;
+    private final boolean failFast;
+
+    private BytecodeBudget(String mode) {
+        this.enabled = mode.equals("warn") || mode.equals("fail");
+        this.failFast = mode.equals("fail");
+    }
+
+    public static boolean isEnabled() {
+        return INSTANCE.enabled;
+    }
+
+    public static BytecodeBudget getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * If crossing a limit should fail the injection, instead of logging a warning
+     */
+    public boolean isFailFast() {
+        return this.failFast;
+    }
+
+    /**
+     * Records the bytes and locals added to a target by a handler.
+     *
+     * @return A description of each limit that the target has crossed because of this, which is empty if none were
+     */
+    public List<String> record(
+        MethodNode target,
+        String targetId,
+        String handler,
+        int codeSizeBefore,
+        int codeSizeAfter,
+        int maxLocalsBefore,
+        int maxLocalsAfter
+    ) {
+        TargetBudget budget;
+        synchronized (this.targets) {
+            budget = this.targets.get(target);
+            if (budget == null) {
+                budget = new TargetBudget(codeSizeBefore, maxLocalsBefore);
+                this.targets.put(target, budget);
+            }
+        }
+
+        return budget.record(targetId, handler, codeSizeAfter - codeSizeBefore, codeSizeAfter, maxLocalsAfter);
+    }
+
+    private static class TargetBudget {
+        /**
+         * The size of the target before any BetterInject handlers were injected
+         */
+        private final int originalCodeSize;
+        private final int originalMaxLocals;
+
+        /**
+         * The bytes added by each handler, in the order they were injected
+         */
+        private final Map<String, Integer> handlerBytes = new LinkedHashMap<>();
+        private final boolean[] reported = new boolean[LIMITS.length];
+
+        private TargetBudget(int originalCodeSize, int originalMaxLocals) {
+            this.originalCodeSize = originalCodeSize;
+            this.originalMaxLocals = originalMaxLocals;
+        }
+
+        private synchronized List<String> record(String targetId, String handler, int addedBytes, int codeSize, int maxLocals) {
+            Integer previous = this.handlerBytes.get(handler);
+            this.handlerBytes.put(handler, (previous == null ? 0 : previous) + addedBytes);
+
+            List<String> crossed = new ArrayList<>();
+            for (int i = 0; i < LIMITS.length; i++) {
+                if (this.reported[i] || this.originalCodeSize > LIMITS[i] || codeSize <= LIMITS[i]) {
+                    continue;
+                }
+
+                this.reported[i] = true;
+                crossed.add(String.format(
+                    "%s has grown from %d to %d bytes, past %s (%d bytes), and from %d to %d locals. Added by: %s",
+                    targetId,
+                    this.originalCodeSize,
+                    codeSize,
+                    LIMIT_NAMES[i],
+                    LIMITS[i],
+                    this.originalMaxLocals,
+                    maxLocals,
+                    this.describeHandlers()
+                ));
+            }
+
+            return crossed;
+        }
+
+        private String describeHandlers() {
+            StringBuilder builder = new StringBuilder();
+            for (Map.Entry<String, Integer> entry : this.handlerBytes.entrySet()) {
+                if (builder.length() > 0) {
+                    builder.append(", ");
+                }
+
+                builder.append(entry.getKey()).append(" (").append(entry.getValue()).append(" bytes)");
+            }
+
+            return builder.toString();
+        }
+    }
+}
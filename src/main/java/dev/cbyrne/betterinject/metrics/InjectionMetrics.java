@@ -0,0 +1,153 @@
+package dev.cbyrne.betterinject.metrics;
+
+import dev.cbyrne.betterinject.utils.LogUtils;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Records how much time and bytecode each handler costs in each of its targets.
+ * <p/>
+ * This is disabled unless the {@value #ENABLED_PROPERTY} system property is true. When enabled, the metrics are
+ * available over JMX, and are written as JSON to {@value #FILE_PROPERTY} on shutdown if it is set.
+ */
+public class InjectionMetrics implements InjectionMetricsMBean {
+    public static final String ENABLED_PROPERTY = "betterinject.metrics";
+    public static final String FILE_PROPERTY = "betterinject.metrics.file";
+    public static final String OBJECT_NAME = "dev.cbyrne.betterinject:type=InjectionMetrics";
+
+    private static final InjectionMetrics INSTANCE = new InjectionMetrics();
+    private static final boolean ENABLED = Boolean.getBoolean(ENABLED_PROPERTY);
+
+    private final Map<String, InjectionStats> stats = new ConcurrentHashMap<>();
+
+    private InjectionMetrics() {
+    }
+
+    public static boolean isEnabled() {
+        return ENABLED;
+    }
+
+    public static InjectionMetrics getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Registers the MBean and the shutdown dump, if metrics are enabled.
+     */
+    public static void initialize() {
+        if (!ENABLED) {
+            return;
+        }
+
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(INSTANCE, new ObjectName(OBJECT_NAME));
+        } catch (JMException e) {
+            LogUtils.LOGGER.warn("Failed to register the injection metrics MBean", e);
+        }
+
+        String file = System.getProperty(FILE_PROPERTY);
+        if (file != null && !file.isEmpty()) {
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> INSTANCE.dump(file), "BetterInject metrics dump"));
+        }
+    }
+
+    /**
+     * Records a single injection of a handler at one node in a target.
+     */
+    public void record(
+        String handler,
+        String target,
+        long injectNanos,
+        long localsResolutionNanos,
+        int instructionsAdded,
+        int localsAllocated,
+        int bytecodeGrowth
+    ) {
+        this.stats.computeIfAbsent(handler + " -> " + target, key -> new InjectionStats(handler, target))
+            .add(injectNanos, localsResolutionNanos, instructionsAdded, localsAllocated, bytecodeGrowth);
+    }
+
+    public Collection<InjectionStats> getStats() {
+        return new ArrayList<>(this.stats.values());
+    }
+
+    @Override
+    public int getHandlerTargetCount() {
+        return this.stats.size();
+    }
+
+    @Override
+    public int getInjectionNodeCount() {
+        int nodes = 0;
+        for (InjectionStats stats : this.stats.values()) {
+            nodes += stats.getInjectionNodes();
+        }
+
+        return nodes;
+    }
+
+    @Override
+    public long getTotalInjectNanos() {
+        long nanos = 0;
+        for (InjectionStats stats : this.stats.values()) {
+            nanos += stats.getInjectNanos();
+        }
+
+        return nanos;
+    }
+
+    @Override
+    public long getTotalLocalsResolutionNanos() {
+        long nanos = 0;
+        for (InjectionStats stats : this.stats.values()) {
+            nanos += stats.getLocalsResolutionNanos();
+        }
+
+        return nanos;
+    }
+
+    @Override
+    public int getTotalBytecodeGrowth() {
+        int bytes = 0;
+        for (InjectionStats stats : this.stats.values()) {
+            bytes += stats.getBytecodeGrowth();
+        }
+
+        return bytes;
+    }
+
+    @Override
+    public String toJson() {
+        List<String> entries = new ArrayList<>();
+        for (InjectionStats stats : this.stats.values()) {
+            entries.add(stats.toJson());
+        }
+
+        return "[" + String.join(",", entries) + "]";
+    }
+
+    @Override
+    public void reset() {
+        this.stats.clear();
+    }
+
+    private void dump(String file) {
+        try (Writer writer = Files.newBufferedWriter(Paths.get(file), StandardCharsets.UTF_8)) {
+            writer.write(this.toJson());
+        } catch (IOException e) {
+            LogUtils.LOGGER.warn("Failed to write injection metrics to {}", file, e);
+        }
+    }
+}
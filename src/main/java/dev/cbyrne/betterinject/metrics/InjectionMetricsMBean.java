@@ -0,0 +1,23 @@
+package dev.cbyrne.betterinject.metrics;
+
+/**
+ * The JMX view of {@link InjectionMetrics}, registered as {@value InjectionMetrics#OBJECT_NAME}.
+ */
+public interface InjectionMetricsMBean {
+    int getHandlerTargetCount();
+
+    int getInjectionNodeCount();
+
+    long getTotalInjectNanos();
+
+    long getTotalLocalsResolutionNanos();
+
+    int getTotalBytecodeGrowth();
+
+    /**
+     * All of the recorded stats as a JSON array
+     */
+    String toJson();
+
+    void reset();
+}
@@ -0,0 +1,84 @@
+package dev.cbyrne.betterinject.metrics;
+
+/**
+ * The transform-time cost of one handler in one target.
+ *
+ * @see InjectionMetrics
+ */
+public class InjectionStats {
+    private final String handler;
+    private final String target;
+
+    private long injectNanos = 0;
+    private long localsResolutionNanos = 0;
+    private int injectionNodes = 0;
+    private int instructionsAdded = 0;
+    private int localsAllocated = 0;
+    private int bytecodeGrowth = 0;
+
+    InjectionStats(String handler, String target) {
+        this.handler = handler;
+        this.target = target;
+    }
+
+    synchronized void add(long injectNanos, long localsResolutionNanos, int instructionsAdded, int localsAllocated, int bytecodeGrowth) {
+        this.injectNanos += injectNanos;
+        this.localsResolutionNanos += localsResolutionNanos;
+        this.injectionNodes++;
+        this.instructionsAdded += instructionsAdded;
+        this.localsAllocated += localsAllocated;
+        this.bytecodeGrowth += bytecodeGrowth;
+    }
+
+    public String getHandler() {
+        return this.handler;
+    }
+
+    public String getTarget() {
+        return this.target;
+    }
+
+    public synchronized long getInjectNanos() {
+        return this.injectNanos;
+    }
+
+    public synchronized long getLocalsResolutionNanos() {
+        return this.localsResolutionNanos;
+    }
+
+    public synchronized int getInjectionNodes() {
+        return this.injectionNodes;
+    }
+
+    public synchronized int getInstructionsAdded() {
+        return this.instructionsAdded;
+    }
+
+    public synchronized int getLocalsAllocated() {
+        return this.localsAllocated;
+    }
+
+    /**
+     * The estimated number of bytes added to the target's code
+     */
+    public synchronized int getBytecodeGrowth() {
+        return this.bytecodeGrowth;
+    }
+
+    synchronized String toJson() {
+        return "{"
+            + "\"handler\":\"" + escape(this.handler) + "\","
+            + "\"target\":\"" + escape(this.target) + "\","
+            + "\"injectNanos\":" + this.injectNanos + ","
+            + "\"localsResolutionNanos\":" + this.localsResolutionNanos + ","
+            + "\"injectionNodes\":" + this.injectionNodes + ","
+            + "\"instructionsAdded\":" + this.instructionsAdded + ","
+            + "\"localsAllocated\":" + this.localsAllocated + ","
+            + "\"bytecodeGrowth\":" + this.bytecodeGrowth
+            + "}";
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+}
@@ -0,0 +1,340 @@
+package dev.cbyrne.betterinject.processor;
+
+import dev.cbyrne.betterinject.annotations.Arg;
+import dev.cbyrne.betterinject.annotations.Inject;
+import dev.cbyrne.betterinject.annotations.Local;
+import dev.cbyrne.betterinject.annotations.ReturnValue;
+import dev.cbyrne.betterinject.helpers.MutableLocals;
+import dev.cbyrne.betterinject.injector.signature.HandlerIndex;
+import dev.cbyrne.betterinject.injector.signature.HandlerParameter;
+import dev.cbyrne.betterinject.injector.strategy.ArgumentHandlingStrategy;
+import dev.cbyrne.betterinject.utils.CallbackInfoUtils;
+import org.objectweb.asm.Type;
+
+import javax.annotation.processing.Messager;
+import javax.lang.model.element.*;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.Elements;
+import javax.tools.Diagnostic;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Validates @Inject handlers at compile time, mirroring the checks done by
+ * {@link dev.cbyrne.betterinject.injector.InjectInjector} when the mixin is applied.
+ * <p/>
+ * The target method can only be checked if its class is on the compile classpath, and the handler's `method` selects
+ * exactly one method in it. Otherwise, only the checks that don't need the target are done.
+ */
+public class HandlerValidator {
+    private static final String MIXIN_ANNOTATION = "org.spongepowered.asm.mixin.Mixin";
+
+    private final Elements elements;
+    private final Messager messager;
+    private final TypeDescriptors descriptors;
+
+    public HandlerValidator(Elements elements, Messager messager, TypeDescriptors descriptors) {
+        this.elements = elements;
+        this.messager = messager;
+        this.descriptors = descriptors;
+    }
+
+    /**
+     * @return The index entry for this handler, or null if it is invalid
+     */
+    public String validate(ExecutableElement handler) {
+        Inject inject = handler.getAnnotation(Inject.class);
+        List<HandlerParameter.Kind> kinds = new ArrayList<>();
+        boolean valid = true;
+
+        for (VariableElement parameter : handler.getParameters()) {
+            kinds.add(this.kindOf(parameter));
+        }
+
+        // See HandlerSignature#of, if any parameter is not annotated, we are in strict mode
+        ArgumentHandlingStrategy strategy = kinds.contains(HandlerParameter.Kind.POSITIONAL)
+            ? ArgumentHandlingStrategy.STRICT
+            : ArgumentHandlingStrategy.LIGHT;
+
+        boolean returnsBoolean = handler.getReturnType().getKind() == TypeKind.BOOLEAN;
+        if (returnsBoolean && !inject.cancellable()) {
+            this.error(handler, "Handler " + handler.getSimpleName() + " returns boolean, but the injection is not cancellable");
+            valid = false;
+        }
+
+        if (inject.sampleRate() < 1 || (inject.sampleRate() > 1 && inject.cancellable())) {
+            this.error(handler, "Handler " + handler.getSimpleName() + " has a sampleRate of " + inject.sampleRate() + ", it must be at least 1, and sampled handlers can't be cancellable");
+            valid = false;
+        }
+
+        if (inject.async() && (inject.cancellable() || handler.getReturnType().getKind() != TypeKind.VOID || kinds.contains(HandlerParameter.Kind.CALLBACK_INFO))) {
+            this.error(handler, "Handler " + handler.getSimpleName() + " is async, so it must be non-cancellable, return void, and not take a CallbackInfo");
+            valid = false;
+        }
+
+        for (VariableElement parameter : handler.getParameters()) {
+            valid &= this.validateMutableLocal(handler, inject, parameter);
+        }
+
+        for (ExecutableElement target : this.findTargets(handler, inject)) {
+            valid &= this.validateAgainstTarget(handler, target, strategy, kinds, returnsBoolean);
+        }
+
+        return valid ? HandlerIndex.format(strategy, kinds) : null;
+    }
+
+    /**
+     * A mutable @Local must be a primitive LocalRef, or a LocalRef with a type argument, see HandlerSignature
+     */
+    private boolean validateMutableLocal(ExecutableElement handler, Inject inject, VariableElement parameter) {
+        Local local = parameter.getAnnotation(Local.class);
+        if (local == null || !local.mutable()) {
+            return true;
+        }
+
+        if (inject.async()) {
+            this.error(parameter, "Handler " + handler.getSimpleName() + " is async, so @Local " + parameter.getSimpleName() + " can't be mutable");
+            return false;
+        }
+
+        Type type = Type.getType(this.descriptors.of(parameter.asType()));
+        Type valueType = type.getSort() == Type.OBJECT ? MutableLocals.valueType(type) : null;
+        boolean isRaw = valueType != null
+            && valueType.getSort() == Type.OBJECT
+            && ((DeclaredType) parameter.asType()).getTypeArguments().isEmpty();
+
+        if (valueType == null || isRaw) {
+            this.error(parameter, "Mutable @Local " + parameter.getSimpleName() + " must be a LocalRef<T>, or a primitive LocalRef such as LocalIntRef");
+            return false;
+        }
+
+        return true;
+    }
+
+    private HandlerParameter.Kind kindOf(VariableElement parameter) {
+        String descriptor = this.descriptors.of(parameter.asType());
+        if (CallbackInfoUtils.typeIsCallbackInfo(Type.getType(descriptor))) {
+            return HandlerParameter.Kind.CALLBACK_INFO;
+        }
+
+        if (parameter.getAnnotation(ReturnValue.class) != null) {
+            return HandlerParameter.Kind.RETURN_VALUE;
+        }
+
+        if (parameter.getAnnotation(Arg.class) != null) {
+            return HandlerParameter.Kind.ARG;
+        }
+
+        if (parameter.getAnnotation(Local.class) != null) {
+            return HandlerParameter.Kind.LOCAL;
+        }
+
+        return HandlerParameter.Kind.POSITIONAL;
+    }
+
+    private boolean validateAgainstTarget(
+        ExecutableElement handler,
+        ExecutableElement target,
+        ArgumentHandlingStrategy strategy,
+        List<HandlerParameter.Kind> kinds,
+        boolean returnsBoolean
+    ) {
+        boolean valid = true;
+        List<? extends VariableElement> handlerParameters = handler.getParameters();
+        List<? extends VariableElement> targetParameters = target.getParameters();
+
+        if (returnsBoolean && target.getReturnType().getKind() != TypeKind.VOID) {
+            this.error(handler, "Handler " + handler.getSimpleName() + " returns boolean, but target " + target.getSimpleName() + " does not return void");
+            valid = false;
+        }
+
+        if (strategy == ArgumentHandlingStrategy.STRICT) {
+            // The same check as InjectInjector#checkArgumentsStrict
+            boolean matches = targetParameters.size() <= handlerParameters.size();
+            for (int i = 0; matches && i < targetParameters.size(); i++) {
+                String targetType = this.descriptors.of(targetParameters.get(i).asType());
+                String handlerType = this.descriptors.of(handlerParameters.get(i).asType());
+                matches = targetType.equals(handlerType);
+            }
+
+            if (!matches) {
+                this.error(handler, "Arguments of handler " + handler.getSimpleName() + " do not match target " + target.getSimpleName()
+                    + ", ArgumentHandlingStrategy.STRICT mode has been enabled due to none of the handler's arguments being annotated with @Arg.");
+                valid = false;
+            }
+        }
+
+        for (int i = 0; i < handlerParameters.size(); i++) {
+            if (kinds.get(i) == HandlerParameter.Kind.ARG) {
+                valid &= this.validateArg(handlerParameters.get(i), target);
+            } else if (kinds.get(i) == HandlerParameter.Kind.RETURN_VALUE) {
+                valid &= this.validateReturnValue(handlerParameters.get(i), target);
+            } else if (kinds.get(i) == HandlerParameter.Kind.CALLBACK_INFO) {
+                valid &= this.validateCallbackInfo(handlerParameters.get(i), target);
+            }
+        }
+
+        return valid;
+    }
+
+    /**
+     * Checks that an @Arg selects exactly one of the target's arguments. Arguments selected by index or name are skipped,
+     * as these depend on the target's local variables.
+     */
+    private boolean validateArg(VariableElement parameter, ExecutableElement target) {
+        Arg arg = parameter.getAnnotation(Arg.class);
+        if (arg.index() != -1 || arg.names().length != 0) {
+            return true;
+        }
+
+        String type = this.descriptors.of(parameter.asType());
+        int candidates = 0;
+        for (VariableElement targetParameter : target.getParameters()) {
+            if (this.descriptors.of(targetParameter.asType()).equals(type)) {
+                candidates++;
+            }
+        }
+
+        String description = "@Arg " + parameter.getSimpleName() + " in target " + target.getSimpleName();
+        if (arg.ordinal() == -1 && candidates != 1) {
+            this.error(parameter, description + " has no ordinal, but there are " + candidates + " arguments of type " + type);
+            return false;
+        }
+
+        if (arg.ordinal() >= candidates) {
+            this.error(parameter, description + " has ordinal " + arg.ordinal() + ", but there are only " + candidates + " arguments of type " + type);
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Checks that a @ReturnValue can hold the target's return value, the same as InjectInjector#canReceiveReturnValue.
+     */
+    private boolean validateReturnValue(VariableElement parameter, ExecutableElement target) {
+        String type = this.descriptors.of(parameter.asType());
+        String returnType = this.descriptors.of(target.getReturnType());
+        boolean isObject = returnType.startsWith("L") || returnType.startsWith("[");
+
+        if (returnType.equals("V") || (!type.equals(returnType) && !(isObject && type.equals("Ljava/lang/Object;")))) {
+            this.error(parameter, "@ReturnValue " + parameter.getSimpleName() + " has type " + type + ", but target " + target.getSimpleName() + " returns " + returnType);
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Checks that a primitive CallbackInfoReturnable parameter matches the target's return type.
+     */
+    private boolean validateCallbackInfo(VariableElement parameter, ExecutableElement target) {
+        Type type = Type.getType(this.descriptors.of(parameter.asType()));
+        Type returnType = Type.getType(this.descriptors.of(target.getReturnType()));
+
+        if (!CallbackInfoUtils.canReceiveCallbackInfo(type, returnType)) {
+            this.error(parameter, "CallbackInfo " + parameter.getSimpleName() + " has type " + type.getClassName() + ", but target " + target.getSimpleName() + " returns " + returnType.getClassName());
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Finds the target methods of a handler, if they can be found unambiguously.
+     */
+    private List<ExecutableElement> findTargets(ExecutableElement handler, Inject inject) {
+        List<ExecutableElement> targets = new ArrayList<>();
+        List<TypeElement> targetClasses = this.findTargetClasses((TypeElement) handler.getEnclosingElement());
+
+        for (TypeElement targetClass : targetClasses) {
+            for (String selector : inject.method()) {
+                ExecutableElement target = this.findTarget(targetClass, selector);
+                if (target != null) {
+                    targets.add(target);
+                }
+            }
+        }
+
+        return targets;
+    }
+
+    /**
+     * Supports "name", "name(desc)" and "Lowner;name(desc)", anything more complicated is skipped.
+     */
+    private ExecutableElement findTarget(TypeElement targetClass, String selector) {
+        if (selector.startsWith("L") && selector.indexOf(';') != -1 && selector.indexOf(';') < selector.indexOf('(')) {
+            selector = selector.substring(selector.indexOf(';') + 1);
+        }
+
+        int descriptorStart = selector.indexOf('(');
+        String name = descriptorStart == -1 ? selector : selector.substring(0, descriptorStart);
+        String descriptor = descriptorStart == -1 ? null : selector.substring(descriptorStart);
+
+        if (name.isEmpty() || name.contains("*") || name.contains("/")) {
+            return null;
+        }
+
+        ExecutableElement found = null;
+        for (Element member : targetClass.getEnclosedElements()) {
+            if (!(member instanceof ExecutableElement) || !member.getSimpleName().contentEquals(name)) {
+                continue;
+            }
+
+            ExecutableElement method = (ExecutableElement) member;
+            if (descriptor != null && !this.descriptors.of(method).equals(descriptor)) {
+                continue;
+            }
+
+            if (found != null) {
+                // Ambiguous, we don't know which one Mixin would pick
+                return null;
+            }
+
+            found = method;
+        }
+
+        return found;
+    }
+
+    private List<TypeElement> findTargetClasses(TypeElement mixin) {
+        List<TypeElement> classes = new ArrayList<>();
+        for (AnnotationMirror annotation : mixin.getAnnotationMirrors()) {
+            TypeElement annotationType = (TypeElement) annotation.getAnnotationType().asElement();
+            if (!annotationType.getQualifiedName().contentEquals(MIXIN_ANNOTATION)) {
+                continue;
+            }
+
+            for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> value : annotation.getElementValues().entrySet()) {
+                String key = value.getKey().getSimpleName().toString();
+                if (!key.equals("value") && !key.equals("targets")) {
+                    continue;
+                }
+
+                for (Object element : (List<?>) value.getValue().getValue()) {
+                    Object target = ((AnnotationValue) element).getValue();
+                    TypeElement targetClass = null;
+
+                    if (target instanceof TypeMirror && ((TypeMirror) target).getKind() == TypeKind.DECLARED) {
+                        targetClass = (TypeElement) ((DeclaredType) target).asElement();
+                    } else if (target instanceof String) {
+                        targetClass = this.elements.getTypeElement(((String) target).replace('/', '.').replace('$', '.'));
+                    }
+
+                    if (targetClass != null) {
+                        classes.add(targetClass);
+                    }
+                }
+            }
+        }
+
+        return classes;
+    }
+
+    private void error(Element element, String message) {
+        this.messager.printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+}
@@ -0,0 +1,72 @@
+package dev.cbyrne.betterinject.processor;
+
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+
+/**
+ * Converts types from the annotation processing environment into JVM descriptors, so that they can be compared with the
+ * descriptors used at runtime.
+ */
+public class TypeDescriptors {
+    private final Elements elements;
+    private final Types types;
+
+    public TypeDescriptors(Elements elements, Types types) {
+        this.elements = elements;
+        this.types = types;
+    }
+
+    public String of(TypeMirror type) {
+        TypeMirror erased = this.types.erasure(type);
+
+        switch (erased.getKind()) {
+            case BOOLEAN:
+                return "Z";
+            case BYTE:
+                return "B";
+            case SHORT:
+                return "S";
+            case INT:
+                return "I";
+            case LONG:
+                return "J";
+            case CHAR:
+                return "C";
+            case FLOAT:
+                return "F";
+            case DOUBLE:
+                return "D";
+            case VOID:
+                return "V";
+            case ARRAY:
+                return "[" + this.of(((ArrayType) erased).getComponentType());
+            case DECLARED: {
+                Element element = ((DeclaredType) erased).asElement();
+                String binaryName = this.elements.getBinaryName((TypeElement) element).toString();
+                return "L" + binaryName.replace('.', '/') + ";";
+            }
+            default:
+                // Type variables and intersections should have been erased, this is as close as we can get
+                return "Ljava/lang/Object;";
+        }
+    }
+
+    /**
+     * The descriptor of a method, i.e. "(ILjava/lang/String;)V"
+     */
+    public String of(ExecutableElement method) {
+        StringBuilder builder = new StringBuilder("(");
+        for (VariableElement parameter : method.getParameters()) {
+            builder.append(this.of(parameter.asType()));
+        }
+
+        return builder.append(')').append(this.of(method.getReturnType())).toString();
+    }
+}
@@ -0,0 +1,160 @@
+package dev.cbyrne.betterinject.profiling;
+
+import dev.cbyrne.betterinject.utils.LogUtils;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The runtime latency of handlers injected with {@code profile = true}.
+ * <p/>
+ * Each profiled handler is given an index when it is injected, and the target records the time spent calling it:
+ * <pre>
+ * long start = System.nanoTime();
+ * handler(...);
+ * HandlerProfiler.record(index, start);
+ * </pre>
+ * The latencies are exposed through {@link #snapshot()}, and the {@value #OBJECT_NAME} MBean.
+ */
+public final class HandlerProfiler implements HandlerProfilerMBean {
+    public static final String OBJECT_NAME = "dev.cbyrne.betterinject:type=HandlerProfiler";
+
+    private static final HandlerProfiler INSTANCE = new HandlerProfiler();
+
+    /**
+     * The histograms by their index, this is replaced when a handler is registered so that recording never locks
+     */
+    private static volatile LatencyHistogram[] histograms = new LatencyHistogram[0];
+    private static final Map<String, Integer> INDICES = new HashMap<>();
+    private static boolean registeredMBean = false;
+
+    private HandlerProfiler() {
+    }
+
+    public static HandlerProfiler getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Gets the index of a handler's histogram, creating it if this is the first time the handler has been injected.
+     */
+    public static synchronized int register(String handler) {
+        Integer index = INDICES.get(handler);
+        if (index != null) {
+            return index;
+        }
+
+        if (!registeredMBean) {
+            registerMBean();
+        }
+
+        LatencyHistogram[] grown = Arrays.copyOf(histograms, histograms.length + 1);
+        grown[histograms.length] = new LatencyHistogram(handler);
+        histograms = grown;
+
+        INDICES.put(handler, grown.length - 1);
+        return grown.length - 1;
+    }
+
+    /**
+     * Called by the target after the handler returns.
+     */
+    public static void record(int index, long startNanos) {
+        histograms[index].record(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * A snapshot of every profiled handler, sorted by the total time spent in them.
+     */
+    public List<LatencySnapshot> snapshot() {
+        List<LatencySnapshot> snapshots = new ArrayList<>();
+        for (LatencyHistogram histogram : histograms) {
+            snapshots.add(histogram.snapshot());
+        }
+
+        snapshots.sort(Comparator.comparingLong(LatencySnapshot::getTotalNanos).reversed());
+        return snapshots;
+    }
+
+    /**
+     * A snapshot of one handler, in the format of "mixin.class.Name::handlerName"
+     *
+     * @return The snapshot, or null if the handler is not profiled
+     */
+    public LatencySnapshot snapshot(String handler) {
+        LatencyHistogram histogram = this.histogram(handler);
+        return histogram != null ? histogram.snapshot() : null;
+    }
+
+    @Override
+    public String[] getHandlers() {
+        LatencyHistogram[] histograms = HandlerProfiler.histograms;
+        String[] handlers = new String[histograms.length];
+        for (int i = 0; i < histograms.length; i++) {
+            handlers[i] = histograms[i].getHandler();
+        }
+
+        return handlers;
+    }
+
+    @Override
+    public long getCount(String handler) {
+        LatencySnapshot snapshot = this.snapshot(handler);
+        return snapshot != null ? snapshot.getCount() : 0;
+    }
+
+    @Override
+    public long getTotalNanos(String handler) {
+        LatencySnapshot snapshot = this.snapshot(handler);
+        return snapshot != null ? snapshot.getTotalNanos() : 0;
+    }
+
+    @Override
+    public long getPercentileNanos(String handler, double percentile) {
+        LatencySnapshot snapshot = this.snapshot(handler);
+        return snapshot != null ? snapshot.getPercentileNanos(percentile) : 0;
+    }
+
+    @Override
+    public String toJson() {
+        List<String> entries = new ArrayList<>();
+        for (LatencySnapshot snapshot : this.snapshot()) {
+            entries.add(snapshot.toJson());
+        }
+
+        return "[" + String.join(",", entries) + "]";
+    }
+
+    @Override
+    public void reset() {
+        for (LatencyHistogram histogram : histograms) {
+            histogram.reset();
+        }
+    }
+
+    private LatencyHistogram histogram(String handler) {
+        Integer index;
+        synchronized (HandlerProfiler.class) {
+            index = INDICES.get(handler);
+        }
+
+        return index != null ? histograms[index] : null;
+    }
+
+    private static void registerMBean() {
+        registeredMBean = true;
+
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(INSTANCE, new ObjectName(OBJECT_NAME));
+        } catch (JMException e) {
+            LogUtils.LOGGER.warn("Failed to register the handler profiler MBean", e);
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package dev.cbyrne.betterinject.profiling;
+
+/**
+ * The JMX view of {@link HandlerProfiler}, registered as {@value HandlerProfiler#OBJECT_NAME}.
+ */
+public interface HandlerProfilerMBean {
+    String[] getHandlers();
+
+    long getCount(String handler);
+
+    long getTotalNanos(String handler);
+
+    long getPercentileNanos(String handler, double percentile);
+
+    /**
+     * A snapshot of every handler as a JSON array, sorted by the total time spent in them
+     */
+    String toJson();
+
+    void reset();
+}
@@ -0,0 +1,62 @@
+package dev.cbyrne.betterinject.profiling;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A histogram of call latencies, which can be recorded to from many threads without locking or allocating.
+ * <p/>
+ * Bucket n holds the calls which took less than 2^n nanoseconds, and at least 2^(n - 1). Every counter is a
+ * {@link LongAdder}, which is striped across threads when there is contention.
+ */
+public class LatencyHistogram {
+    static final int BUCKETS = 64;
+
+    private final String handler;
+    private final LongAdder[] buckets = new LongAdder[BUCKETS];
+    private final LongAdder totalNanos = new LongAdder();
+    private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+    LatencyHistogram(String handler) {
+        this.handler = handler;
+
+        for (int i = 0; i < BUCKETS; i++) {
+            this.buckets[i] = new LongAdder();
+        }
+    }
+
+    public void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+
+        this.buckets[Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(nanos))].increment();
+        this.totalNanos.add(nanos);
+        this.maxNanos.accumulate(nanos);
+    }
+
+    public String getHandler() {
+        return this.handler;
+    }
+
+    /**
+     * A copy of the current values, this is not atomic, so calls recorded while it is taken may be partially included.
+     */
+    public LatencySnapshot snapshot() {
+        long[] counts = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = this.buckets[i].sum();
+        }
+
+        return new LatencySnapshot(this.handler, counts, this.totalNanos.sum(), this.maxNanos.get());
+    }
+
+    void reset() {
+        for (LongAdder bucket : this.buckets) {
+            bucket.reset();
+        }
+
+        this.totalNanos.reset();
+        this.maxNanos.reset();
+    }
+}
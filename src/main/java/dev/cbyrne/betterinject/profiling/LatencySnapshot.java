@@ -0,0 +1,89 @@
+package dev.cbyrne.betterinject.profiling;
+
+import java.util.Locale;
+
+/**
+ * The latencies recorded by a {@link LatencyHistogram} at one point in time.
+ */
+public class LatencySnapshot {
+    private final String handler;
+    private final long[] buckets;
+    private final long count;
+    private final long totalNanos;
+    private final long maxNanos;
+
+    LatencySnapshot(String handler, long[] buckets, long totalNanos, long maxNanos) {
+        this.handler = handler;
+        this.buckets = buckets;
+        this.totalNanos = totalNanos;
+        this.maxNanos = maxNanos;
+
+        long count = 0;
+        for (long bucket : buckets) {
+            count += bucket;
+        }
+
+        this.count = count;
+    }
+
+    public String getHandler() {
+        return this.handler;
+    }
+
+    public long getCount() {
+        return this.count;
+    }
+
+    public long getTotalNanos() {
+        return this.totalNanos;
+    }
+
+    public long getMaxNanos() {
+        return this.maxNanos;
+    }
+
+    public double getMeanNanos() {
+        return this.count == 0 ? 0 : (double) this.totalNanos / this.count;
+    }
+
+    /**
+     * An upper bound of the latency at a percentile, i.e. 99 for the p99. This is accurate to a power of two.
+     */
+    public long getPercentileNanos(double percentile) {
+        if (this.count == 0) {
+            return 0;
+        }
+
+        long rank = (long) Math.ceil(this.count * Math.min(100, Math.max(0, percentile)) / 100);
+        long seen = 0;
+        for (int i = 0; i < this.buckets.length; i++) {
+            seen += this.buckets[i];
+            if (seen >= Math.max(1, rank)) {
+                return Math.min(this.maxNanos, i == 0 ? 0 : (1L << i) - 1);
+            }
+        }
+
+        return this.maxNanos;
+    }
+
+    /**
+     * The number of calls in each bucket, see {@link LatencyHistogram}
+     */
+    public long[] getBuckets() {
+        return this.buckets.clone();
+    }
+
+    String toJson() {
+        return String.format(
+            Locale.ROOT,
+            "{\"handler\":\"%s\",\"count\":%d,\"totalNanos\":%d,\"meanNanos\":%.1f,\"p50Nanos\":%d,\"p99Nanos\":%d,\"maxNanos\":%d}",
+            this.handler.replace("\\", "\\\\").replace("\"", "\\\""),
+            this.count,
+            this.totalNanos,
+            this.getMeanNanos(),
+            this.getPercentileNanos(50),
+            this.getPercentileNanos(99),
+            this.maxNanos
+        );
+    }
+}
@@ -0,0 +1,121 @@
+package dev.cbyrne.betterinject.utils;
+
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.*;
+
+public class BytecodeUtils {
+    /**
+     * The smallest instruction which pushes this int on to the stack.
+     */
+    public static AbstractInsnNode pushInt(int value) {
+        if (value >= -1 && value <= 5) {
+            return new InsnNode(Opcodes.ICONST_0 + value);
+        }
+
+        if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+            return new IntInsnNode(Opcodes.BIPUSH, value);
+        }
+
+        if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+            return new IntInsnNode(Opcodes.SIPUSH, value);
+        }
+
+        return new LdcInsnNode(value);
+    }
+
+    /**
+     * The instruction which boxes a primitive on the top of the stack, or null if the type is not a primitive.
+     */
+    public static AbstractInsnNode box(Type type) {
+        String boxClass;
+        switch (type.getSort()) {
+            case Type.BOOLEAN:
+                boxClass = "java/lang/Boolean";
+                break;
+            case Type.CHAR:
+                boxClass = "java/lang/Character";
+                break;
+            case Type.BYTE:
+                boxClass = "java/lang/Byte";
+                break;
+            case Type.SHORT:
+                boxClass = "java/lang/Short";
+                break;
+            case Type.INT:
+                boxClass = "java/lang/Integer";
+                break;
+            case Type.FLOAT:
+                boxClass = "java/lang/Float";
+                break;
+            case Type.LONG:
+                boxClass = "java/lang/Long";
+                break;
+            case Type.DOUBLE:
+                boxClass = "java/lang/Double";
+                break;
+            default:
+                return null;
+        }
+
+        return new MethodInsnNode(Opcodes.INVOKESTATIC, boxClass, "valueOf", "(" + type.getDescriptor() + ")L" + boxClass + ";", false);
+    }
+
+    /**
+     * Estimates the size of a method's code attribute in bytes, without writing the class.
+     * <p/>
+     * This is exact for most instructions. Constants are assumed to fit in a single-byte constant pool index, jumps are
+     * assumed to be short, and switches are assumed to need the most padding.
+     */
+    public static int estimateCodeSize(MethodNode method) {
+        int size = 0;
+        for (AbstractInsnNode insn : method.instructions) {
+            size += estimateSize(insn);
+        }
+
+        return size;
+    }
+
+    public static int estimateSize(AbstractInsnNode insn) {
+        switch (insn.getType()) {
+            case AbstractInsnNode.LABEL:
+            case AbstractInsnNode.LINE:
+            case AbstractInsnNode.FRAME:
+                return 0;
+            case AbstractInsnNode.INSN:
+                return 1;
+            case AbstractInsnNode.INT_INSN:
+                return insn.getOpcode() == Opcodes.SIPUSH ? 3 : 2;
+            case AbstractInsnNode.VAR_INSN: {
+                int index = ((VarInsnNode) insn).var;
+                if (index <= 3 && insn.getOpcode() != Opcodes.RET) {
+                    // xLOAD_n and xSTORE_n
+                    return 1;
+                }
+
+                return index < 256 ? 2 : 4;
+            }
+            case AbstractInsnNode.IINC_INSN: {
+                IincInsnNode iinc = (IincInsnNode) insn;
+                return iinc.var < 256 && iinc.incr >= Byte.MIN_VALUE && iinc.incr <= Byte.MAX_VALUE ? 3 : 6;
+            }
+            case AbstractInsnNode.LDC_INSN: {
+                Object constant = ((LdcInsnNode) insn).cst;
+                return constant instanceof Long || constant instanceof Double ? 3 : 2;
+            }
+            case AbstractInsnNode.METHOD_INSN:
+                return insn.getOpcode() == Opcodes.INVOKEINTERFACE ? 5 : 3;
+            case AbstractInsnNode.INVOKE_DYNAMIC_INSN:
+                return 5;
+            case AbstractInsnNode.MULTIANEWARRAY_INSN:
+                return 4;
+            case AbstractInsnNode.TABLESWITCH_INSN:
+                return 16 + 4 * ((TableSwitchInsnNode) insn).labels.size();
+            case AbstractInsnNode.LOOKUPSWITCH_INSN:
+                return 12 + 8 * ((LookupSwitchInsnNode) insn).labels.size();
+            default:
+                // TYPE_INSN, FIELD_INSN and JUMP_INSN
+                return 3;
+        }
+    }
+}
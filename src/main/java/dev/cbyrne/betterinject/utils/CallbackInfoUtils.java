@@ -1,5 +1,6 @@
 package dev.cbyrne.betterinject.utils;
 
+import dev.cbyrne.betterinject.callback.*;
 import org.objectweb.asm.Type;
 import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
 import org.spongepowered.asm.mixin.injection.callback.CallbackInfoReturnable;
@@ -10,6 +11,36 @@ public class CallbackInfoUtils {
     public static final String RETURNABLE_DESCRIPTOR = String.format("L%s;", CallbackInfoReturnable.class.getName().replace(".", "/"));
     public static final String CTOR = "(Ljava/lang/String;Z)V";
 
+    /**
+     * The CallbackInfoReturnables which store a primitive return value without boxing it, indexed by {@link Type#getSort()}
+     */
+    private static final String[] PRIMITIVE_RETURNABLES = new String[Type.DOUBLE + 1];
+
+    static {
+        PRIMITIVE_RETURNABLES[Type.BOOLEAN] = Type.getInternalName(CallbackInfoReturnableBoolean.class);
+        PRIMITIVE_RETURNABLES[Type.CHAR] = Type.getInternalName(CallbackInfoReturnableChar.class);
+        PRIMITIVE_RETURNABLES[Type.BYTE] = Type.getInternalName(CallbackInfoReturnableByte.class);
+        PRIMITIVE_RETURNABLES[Type.SHORT] = Type.getInternalName(CallbackInfoReturnableShort.class);
+        PRIMITIVE_RETURNABLES[Type.INT] = Type.getInternalName(CallbackInfoReturnableInt.class);
+        PRIMITIVE_RETURNABLES[Type.FLOAT] = Type.getInternalName(CallbackInfoReturnableFloat.class);
+        PRIMITIVE_RETURNABLES[Type.LONG] = Type.getInternalName(CallbackInfoReturnableLong.class);
+        PRIMITIVE_RETURNABLES[Type.DOUBLE] = Type.getInternalName(CallbackInfoReturnableDouble.class);
+    }
+
+    /**
+     * The class of the CallbackInfo which is created for a target with this return type.
+     * <p/>
+     * This is a primitive-specialized CallbackInfoReturnable (e.g. {@link CallbackInfoReturnableInt}) for primitive
+     * return types, otherwise it is the same as {@link CallbackInfo#getCallInfoClassName(Type)}.
+     */
+    public static String callbackInfoClassName(Type returnType) {
+        if (isPrimitiveReturnable(returnType)) {
+            return PRIMITIVE_RETURNABLES[returnType.getSort()];
+        }
+
+        return CallbackInfo.getCallInfoClassName(returnType);
+    }
+
     public static String constructorDescriptor(Type returnType) {
         if (returnType.equals(Type.VOID_TYPE)) {
             return CTOR;
@@ -24,7 +55,22 @@ public class CallbackInfoUtils {
 
     public static boolean typeIsCallbackInfo(Type type) {
         String desc = type.getDescriptor();
-        return desc.equals(DESCRIPTOR) || desc.equals(RETURNABLE_DESCRIPTOR);
+        if (desc.equals(DESCRIPTOR) || desc.equals(RETURNABLE_DESCRIPTOR)) {
+            return true;
+        }
+
+        return type.getSort() == Type.OBJECT && isPrimitiveReturnableClass(type.getInternalName());
+    }
+
+    /**
+     * If a handler's CallbackInfo parameter can be passed the CallbackInfo created for a target with this return type
+     */
+    public static boolean canReceiveCallbackInfo(Type parameterType, Type returnType) {
+        if (!isPrimitiveReturnableClass(parameterType.getInternalName())) {
+            return true;
+        }
+
+        return parameterType.getInternalName().equals(callbackInfoClassName(returnType));
     }
 
     public static String returnFunctionName(Type returnType) {
@@ -42,4 +88,19 @@ public class CallbackInfoUtils {
 
         return String.format("()%s", returnType.getDescriptor());
     }
-}
\ No newline at end of file
+
+    private static boolean isPrimitiveReturnable(Type returnType) {
+        int sort = returnType.getSort();
+        return sort >= Type.BOOLEAN && sort <= Type.DOUBLE;
+    }
+
+    private static boolean isPrimitiveReturnableClass(String internalName) {
+        for (String returnable : PRIMITIVE_RETURNABLES) {
+            if (internalName.equals(returnable)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+}
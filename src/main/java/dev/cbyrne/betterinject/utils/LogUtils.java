@@ -0,0 +1,11 @@
+package dev.cbyrne.betterinject.utils;
+
+import org.spongepowered.asm.logging.ILogger;
+import org.spongepowered.asm.service.MixinService;
+
+/**
+ * The logger used by BetterInject outside of an {@link org.spongepowered.asm.mixin.injection.code.Injector}.
+ */
+public class LogUtils {
+    public static final ILogger LOGGER = MixinService.getService().getLogger("betterinject");
+}
@@ -0,0 +1,114 @@
+package dev.cbyrne.betterinject.utils;
+
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.signature.SignatureReader;
+import org.objectweb.asm.signature.SignatureVisitor;
+import org.objectweb.asm.tree.MethodNode;
+
+public class SignatureUtils {
+    /**
+     * The erased type of the first type argument of a method's parameter, i.e. String for {@code LocalRef<String>}.
+     *
+     * @return The type argument, or null if the method has no generic signature, or the parameter has no type arguments
+     */
+    public static Type firstTypeArgument(MethodNode method, int parameter) {
+        if (method.signature == null) {
+            return null;
+        }
+
+        TypeArgumentFinder finder = new TypeArgumentFinder(parameter);
+        new SignatureReader(method.signature).accept(finder);
+        return finder.erasure != null ? finder.erasure.toType() : null;
+    }
+
+    private static class TypeArgumentFinder extends SignatureVisitor {
+        private final int parameter;
+        private int currentParameter = -1;
+        private ErasingVisitor erasure = null;
+
+        private TypeArgumentFinder(int parameter) {
+            super(Opcodes.ASM9);
+            this.parameter = parameter;
+        }
+
+        @Override
+        public SignatureVisitor visitParameterType() {
+            if (++this.currentParameter != this.parameter) {
+                return new IgnoringVisitor();
+            }
+
+            return new IgnoringVisitor() {
+                private boolean found = false;
+
+                @Override
+                public SignatureVisitor visitTypeArgument(char wildcard) {
+                    if (this.found) {
+                        return new IgnoringVisitor();
+                    }
+
+                    this.found = true;
+                    TypeArgumentFinder.this.erasure = new ErasingVisitor();
+                    return TypeArgumentFinder.this.erasure;
+                }
+            };
+        }
+    }
+
+    /**
+     * Builds the erased descriptor of a type signature, ignoring its type arguments
+     */
+    private static class ErasingVisitor extends SignatureVisitor {
+        private final StringBuilder descriptor = new StringBuilder();
+
+        private ErasingVisitor() {
+            super(Opcodes.ASM9);
+        }
+
+        @Override
+        public void visitBaseType(char descriptor) {
+            this.descriptor.append(descriptor);
+        }
+
+        @Override
+        public SignatureVisitor visitArrayType() {
+            this.descriptor.append('[');
+            return this;
+        }
+
+        @Override
+        public void visitTypeVariable(String name) {
+            this.descriptor.append("Ljava/lang/Object;");
+        }
+
+        @Override
+        public void visitClassType(String name) {
+            this.descriptor.append('L').append(name);
+        }
+
+        @Override
+        public void visitInnerClassType(String name) {
+            this.descriptor.append('$').append(name);
+        }
+
+        @Override
+        public SignatureVisitor visitTypeArgument(char wildcard) {
+            return new IgnoringVisitor();
+        }
+
+        @Override
+        public void visitEnd() {
+            this.descriptor.append(';');
+        }
+
+        private Type toType() {
+            return this.descriptor.length() == 0 ? null : Type.getType(this.descriptor.toString());
+        }
+    }
+
+    private static class IgnoringVisitor extends SignatureVisitor {
+        private IgnoringVisitor() {
+            super(Opcodes.ASM9);
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package dev.cbyrne.betterinject.warmup;
+
+import dev.cbyrne.betterinject.utils.LogUtils;
+import org.spongepowered.asm.mixin.MixinEnvironment;
+import org.spongepowered.asm.mixin.Mixins;
+import org.spongepowered.asm.mixin.transformer.Config;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Loads the targets of every mixin config in parallel, so that they are transformed before they are needed.
+ * <p/>
+ * Without this, each target is transformed on whichever thread loads it first, which is usually the main thread. The
+ * warm-up loads each target on a {@link ForkJoinPool}, without initializing it, which runs Mixin (and BetterInject's
+ * injectors) ahead of time. Mixin applies mixins to one class at a time, so the parallelism mostly comes from reading and
+ * defining classes, but the cost is moved off the main thread either way.
+ * <p/>
+ * This is never started automatically, as {@link dev.cbyrne.betterinject.BetterInject#initialize()} runs while Mixin is
+ * still bootstrapping. Loading targets then, or through any class loader other than the one Mixin transforms, would
+ * define them without their mixins. It must be started with {@link dev.cbyrne.betterinject.BetterInject#warmUp(ClassLoader)}
+ * once Mixin has reached the DEFAULT phase, passing the transforming class loader.
+ * <p/>
+ * {@value #CONFIGS_PROPERTY} can be set to a comma-separated list of config names, to only load the targets of those
+ * configs.
+ */
+public class TargetWarmup {
+    public static final String CONFIGS_PROPERTY = "betterinject.warmup.configs";
+    public static final String PARALLELISM_PROPERTY = "betterinject.warmup.parallelism";
+
+    /**
+     * Starts loading the targets with this class loader, if Mixin has reached the DEFAULT phase.
+     *
+     * @param classLoader The class loader which applies Mixin to the classes it loads
+     * @return A future which is completed when every target has been loaded, or has failed to load
+     */
+    public static CompletableFuture<Void> start(ClassLoader classLoader) {
+        MixinEnvironment.Phase phase = MixinEnvironment.getCurrentEnvironment().getPhase();
+        if (phase != MixinEnvironment.Phase.DEFAULT) {
+            LogUtils.LOGGER.warn("Mixin targets can not be warmed up during the {} phase, they would be loaded without their mixins", phase);
+            return CompletableFuture.completedFuture(null);
+        }
+
+        Set<String> targets = findTargets(parseConfigNames(System.getProperty(CONFIGS_PROPERTY, "")));
+        if (targets.isEmpty()) {
+            LogUtils.LOGGER.debug("No mixin targets were found to warm up");
+            return CompletableFuture.completedFuture(null);
+        }
+
+        int parallelism = Integer.getInteger(PARALLELISM_PROPERTY, Math.max(1, Runtime.getRuntime().availableProcessors() - 1));
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        AtomicInteger failed = new AtomicInteger();
+        long start = System.nanoTime();
+
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (String target : targets) {
+            futures.add(CompletableFuture.runAsync(() -> load(target, classLoader, failed), pool));
+        }
+
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).whenComplete((result, throwable) -> {
+            pool.shutdown();
+            LogUtils.LOGGER.info(
+                "Warmed up {} mixin targets on {} threads in {}ms, {} failed to load",
+                targets.size(),
+                parallelism,
+                (System.nanoTime() - start) / 1_000_000,
+                failed.get()
+            );
+        });
+    }
+
+    /**
+     * The target classes of the mixin configs with these names, or of every config if there are none.
+     */
+    private static Set<String> findTargets(Set<String> configNames) {
+        Set<String> targets = new LinkedHashSet<>();
+        for (Config config : Mixins.getConfigs()) {
+            if (!configNames.isEmpty() && !configNames.contains(config.getName())) {
+                continue;
+            }
+
+            for (String target : config.getConfig().getTargets()) {
+                targets.add(target.replace('/', '.'));
+            }
+        }
+
+        return targets;
+    }
+
+    private static Set<String> parseConfigNames(String property) {
+        Set<String> names = new HashSet<>();
+        for (String name : property.split(",")) {
+            if (!name.trim().isEmpty()) {
+                names.add(name.trim());
+            }
+        }
+
+        return names;
+    }
+
+    private static void load(String target, ClassLoader classLoader, AtomicInteger failed) {
+        try {
+            Class.forName(target, false, classLoader);
+        } catch (Throwable t) {
+            // The target will be loaded (and fail, if it still can't be) when it is needed
+            failed.incrementAndGet();
+            LogUtils.LOGGER.debug("Failed to warm up {}: {}", target, t);
+        }
+    }
+}